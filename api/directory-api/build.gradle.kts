@@ -27,6 +27,7 @@ dependencies {
     implementation(libs.edc.spi.web)
     implementation(project(":spi:core-spi"))
     implementation(libs.swagger.annotations)
+    implementation(libs.aircompressor)
 
     testImplementation(libs.restAssured)
     testImplementation(testFixtures(libs.edc.core.jersey))
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.api.directory;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Optional;
+
+/**
+ * A single byte range of a representation, as requested by a {@code Range} header, see RFC 9110, section 14.
+ *
+ * @param first  the position of the first byte of the range
+ * @param last   the position of the last byte of the range, inclusive
+ * @param length the length of the complete representation
+ */
+record ByteRange(long first, long last, long length) {
+    private static final String BYTES_UNIT = "bytes=";
+
+    /**
+     * Parses a {@code Range} header against a representation of the given length. Headers that are malformed, use
+     * another unit than bytes, or request more than one range are ignored, in which case the complete representation
+     * is served.
+     *
+     * @return the range, which may be unsatisfiable, or an empty {@link Optional} if the header has to be ignored
+     */
+    static Optional<ByteRange> parse(@Nullable String range, long length) {
+        if (range == null || !range.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return Optional.empty();
+        }
+        var spec = range.substring(BYTES_UNIT.length()).trim();
+        var separator = spec.indexOf('-');
+        if (separator < 0 || spec.indexOf(',') >= 0) {
+            return Optional.empty();
+        }
+        try {
+            var firstSpec = spec.substring(0, separator).trim();
+            var lastSpec = spec.substring(separator + 1).trim();
+            if (firstSpec.isEmpty()) {
+                // suffix range, i.e. the last n bytes
+                var suffix = Long.parseLong(lastSpec);
+                return suffix < 0 ? Optional.empty() : Optional.of(new ByteRange(Math.max(0, length - suffix), length - 1, length));
+            }
+            var first = Long.parseLong(firstSpec);
+            var last = lastSpec.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastSpec);
+            if (first < 0 || last < first) {
+                return Optional.empty();
+            }
+            return Optional.of(new ByteRange(first, Math.min(last, length - 1), length));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether the range overlaps with the representation. Unsatisfiable ranges are answered with
+     * {@code 416 Range Not Satisfiable}.
+     */
+    boolean satisfiable() {
+        return first < length && first <= last;
+    }
+
+    /**
+     * The number of bytes in the range.
+     */
+    long size() {
+        return last - first + 1;
+    }
+
+    /**
+     * The value of the {@code Content-Range} header of the response.
+     */
+    String contentRange() {
+        return satisfiable() ? "bytes %d-%d/%d".formatted(first, last, length) : "bytes */" + length;
+    }
+}
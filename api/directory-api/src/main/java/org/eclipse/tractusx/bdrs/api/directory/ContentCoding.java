@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.api.directory;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * The content codings in which the BPN Directory can be served, in the order of preference of the server.
+ */
+enum ContentCoding {
+    ZSTD("zstd"),
+    GZIP("gzip"),
+    IDENTITY("identity");
+
+    private final String token;
+
+    ContentCoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Selects the coding for a request based on its {@code Accept-Encoding} header, see RFC 9110, section 12.5.3. Among
+     * equally weighted codings, the server's preference applies. Requests without {@code Accept-Encoding} header are
+     * served GZIP, as earlier versions of BDRS always did.
+     *
+     * @return the coding, or an empty {@link Optional} if none of the supported codings is acceptable
+     */
+    static Optional<ContentCoding> negotiate(@Nullable String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return Optional.of(GZIP);
+        }
+
+        var weights = new HashMap<String, Double>();
+        for (var element : acceptEncoding.split(",")) {
+            var parameters = element.split(";");
+            var coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.isEmpty()) {
+                continue;
+            }
+            weights.merge("x-gzip".equals(coding) ? GZIP.token : coding, weight(parameters), Math::max);
+        }
+
+        var wildcard = weights.get("*");
+        ContentCoding selected = null;
+        var selectedWeight = 0.0;
+        for (var coding : values()) {
+            // identity is acceptable unless explicitly excluded
+            var defaultWeight = wildcard != null ? wildcard : (coding == IDENTITY ? 1.0 : 0.0);
+            var weight = weights.getOrDefault(coding.token, defaultWeight);
+            if (weight > selectedWeight) {
+                selected = coding;
+                selectedWeight = weight;
+            }
+        }
+        return Optional.ofNullable(selected);
+    }
+
+    private static double weight(String[] parameters) {
+        for (var i = 1; i < parameters.length; i++) {
+            var parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0.0;
+                }
+            }
+        }
+        return 1.0;
+    }
+
+    /**
+     * The token of this coding as used in the {@code Accept-Encoding} and {@code Content-Encoding} headers.
+     */
+    String token() {
+        return token;
+    }
+}
@@ -21,13 +21,22 @@ package org.eclipse.tractusx.bdrs.api.directory;
 
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
 import org.eclipse.edc.web.spi.ApiErrorDetail;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryChanges;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * Provides the public BPN Directory API.
@@ -35,16 +44,84 @@ import org.eclipse.edc.web.spi.ApiErrorDetail;
 @OpenAPIDefinition
 @Tag(name = "BDRS Server Directory API")
 public interface DirectoryApi {
-    @Operation(description = "Gets a binary gzipped stream with BPN/DID mapping entries.",
+    @Operation(description = "Gets a binary compressed stream with BPN/DID mapping entries. The content coding is negotiated with the Accept-Encoding header, " +
+            "supported are zstd, gzip and identity. Without Accept-Encoding header, the stream is GZipped. The response carries the directory version as strong ETag. " +
+            "Clients should send it back in the If-None-Match header to avoid downloading an unchanged directory. " +
+            "Interrupted downloads can be resumed with a Range header, together with the ETag of the partial download in the If-Range header.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "The GZipped binary stream contains BPN-to-DID mapping entries."),
+                    @ApiResponse(responseCode = "200", description = "The compressed binary stream contains BPN-to-DID mapping entries."),
+                    @ApiResponse(responseCode = "206", description = "The requested byte range of the compressed binary stream, to resume an interrupted download."),
+                    @ApiResponse(responseCode = "304", description = "The directory has not changed since the version given in the If-None-Match header."),
                     @ApiResponse(responseCode = "400", description = "Request body was malformed",
                             content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
                     @ApiResponse(responseCode = "401", description = "User is not authenticated",
                             content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized to obtain BPN/DID mapping data",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "406", description = "None of the supported content codings is acceptable to the client"),
+                    @ApiResponse(responseCode = "416", description = "The requested byte range is outside of the compressed binary stream")
+
+            })
+    Response getData(Request request, @Parameter(hidden = true) String acceptEncoding,
+                     @Parameter(description = "A single byte range of the compressed directory, e.g. bytes=1024-") String range,
+                     @Parameter(description = "The ETag of the directory version the range refers to") String ifRange);
+
+    @Operation(description = "Gets the changes of the BPN/DID mapping entries since the given directory version, i.e. the ETag of a previous directory response. " +
+            "If the changes since that version are not available anymore, the full directory is returned instead, exactly as by GET /bpn-directory, " +
+            "with the content coding negotiated by the Accept-Encoding header. " +
+            "Such responses carry a Content-Location header that points to the directory.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "The BPN/DID mapping entries that were added, updated or removed since the given version, " +
+                            "or the compressed full directory if the Content-Location header is present.",
+                            content = @Content(schema = @Schema(implementation = DidEntryChanges.class))),
+                    @ApiResponse(responseCode = "400", description = "Request was malformed, e.g. the version was missing",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "401", description = "User is not authenticated",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
                     @ApiResponse(responseCode = "403", description = "User is not authorized to obtain BPN/DID mapping data",
                             content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class))))
+            })
+    Response getChanges(@Parameter(description = "The directory version the client currently holds") Long since, @Parameter(hidden = true) String acceptEncoding, UriInfo uriInfo);
 
+    @Operation(description = "Resolves the DID of a single BPN.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "The BPN/DID mapping entry for the given BPN.",
+                            content = @Content(schema = @Schema(implementation = DidEntry.class))),
+                    @ApiResponse(responseCode = "401", description = "User is not authenticated",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized to obtain BPN/DID mapping data",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "404", description = "No mapping for that BPN was registered",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class))))
+            })
+    DidEntry getEntry(@Parameter(description = "The BPN to resolve") String bpn);
+
+    @Operation(description = "Resolves the DIDs of multiple BPNs at once. BPNs for which no mapping is registered are omitted from the result.",
+            requestBody = @RequestBody(
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = String.class)))
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "A JSON object mapping each resolvable BPN to its DID.",
+                            content = @Content(schema = @Schema(implementation = Map.class))),
+                    @ApiResponse(responseCode = "400", description = "Request body was malformed, or contained too many BPNs",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "401", description = "User is not authenticated",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized to obtain BPN/DID mapping data",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class))))
+            })
+    Response resolve(List<String> bpns);
+
+    @Operation(description = "Resolves the BPNs that are mapped to a DID.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "The BPN/DID mapping entries of all BPNs mapped to the given DID.",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = DidEntry.class)))),
+                    @ApiResponse(responseCode = "401", description = "User is not authenticated",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized to obtain BPN/DID mapping data",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class)))),
+                    @ApiResponse(responseCode = "404", description = "No BPN is mapped to that DID",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = ApiErrorDetail.class))))
             })
-    Response getData();
+    List<DidEntry> getEntriesByDid(@Parameter(description = "The DID to resolve, URL-encoded") String did);
 }
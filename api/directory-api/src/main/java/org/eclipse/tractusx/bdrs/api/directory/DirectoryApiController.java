@@ -19,35 +19,241 @@
 
 package org.eclipse.tractusx.bdrs.api.directory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
+import org.eclipse.edc.web.spi.exception.InvalidRequestException;
+import org.eclipse.edc.web.spi.exception.ObjectNotFoundException;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static jakarta.ws.rs.core.HttpHeaders.ACCEPT_ENCODING;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_LENGTH;
+import static jakarta.ws.rs.core.HttpHeaders.VARY;
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static jakarta.ws.rs.core.Response.Status.NOT_ACCEPTABLE;
+import static jakarta.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+import static jakarta.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
 import static jakarta.ws.rs.core.Response.ok;
+import static jakarta.ws.rs.core.Response.status;
 
 /**
- * Implements the BPN Directory API. The BPN Directory is returned in compressed (GZIP) form.
+ * Implements the BPN Directory API. The BPN Directory is returned in compressed form, using the best content coding the
+ * client accepts (GZIP if it does not send {@code Accept-Encoding}). The version of the directory snapshot is sent as a
+ * strong {@code ETag}, so that clients can poll with {@code If-None-Match} and receive a
+ * {@code 304 Not Modified} if the directory has not changed. Clients that hold an older version can request only the
+ * changes since that version. Single BPNs, or batches of BPNs, can be resolved without downloading the directory, and
+ * DIDs can be resolved back to their BPNs.
  */
 @Path("/")
 @Produces(APPLICATION_JSON)
 public class DirectoryApiController implements DirectoryApi {
+    private static final String RANGE = "Range";
+    private static final String IF_RANGE = "If-Range";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+
     private final DidEntryStore store;
+    private final ObjectMapper mapper;
+    private final int resolveLimit;
+    private final EncodedSnapshotCache encodedSnapshots;
 
-    public DirectoryApiController(DidEntryStore store) {
+    /**
+     * Creates the controller.
+     *
+     * @param resolveLimit the maximum number of BPNs that can be resolved with a single request
+     * @param gzipLevel the compression level for GZIP, or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION} to serve the GZIP content of the store as-is
+     */
+    public DirectoryApiController(DidEntryStore store, ObjectMapper mapper, int resolveLimit, int gzipLevel) {
+        this(store, mapper, resolveLimit, gzipLevel, null);
+    }
+
+    /**
+     * Creates the controller.
+     *
+     * @param resolveLimit the maximum number of BPNs that can be resolved with a single request
+     * @param gzipLevel the compression level for GZIP, or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION} to serve the GZIP content of the store as-is
+     * @param mappedDirectory the directory to which the directory content is written and memory-mapped from, or null to serve it from the heap
+     */
+    public DirectoryApiController(DidEntryStore store, ObjectMapper mapper, int resolveLimit, int gzipLevel, @Nullable Path mappedDirectory) {
         this.store = store;
+        this.mapper = mapper;
+        this.resolveLimit = resolveLimit;
+        this.encodedSnapshots = new EncodedSnapshotCache(gzipLevel, mappedDirectory);
     }
 
     @Override
     @Path("/bpn-directory")
     @GET
-    public Response getData() {
-        return ok().entity((StreamingOutput) stream -> stream.write(store.entries()))
-                .encoding("gzip")
+    public Response getData(@Context Request request, @HeaderParam(ACCEPT_ENCODING) String acceptEncoding,
+                            @HeaderParam(RANGE) String range, @HeaderParam(IF_RANGE) String ifRange) {
+        var coding = ContentCoding.negotiate(acceptEncoding).orElse(null);
+        if (coding == null) {
+            return status(NOT_ACCEPTABLE).build();
+        }
+        var snapshot = store.snapshot();
+        var entityTag = entityTag(snapshot, coding);
+
+        var notModified = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.header(VARY, ACCEPT_ENCODING).build();
+        }
+
+        var content = encodedSnapshots.get(snapshot, coding);
+        // if the client holds parts of another version, it has to download the complete content again
+        if (ifRange == null || ifRange.trim().equals(quoted(entityTag))) {
+            var byteRange = ByteRange.parse(range, content.remaining()).orElse(null);
+            if (byteRange != null) {
+                return rangeResponse(snapshot, coding, content, byteRange).build();
+            }
+        }
+        return snapshotResponse(snapshot, coding, content).build();
+    }
+
+    @Override
+    @Path("/bpn-directory/changes")
+    @GET
+    public Response getChanges(@QueryParam("since") Long since, @HeaderParam(ACCEPT_ENCODING) String acceptEncoding, @Context UriInfo uriInfo) {
+        if (since == null) {
+            throw new InvalidRequestException("Query parameter 'since' is required");
+        }
+        var changes = store.changes(since);
+        if (changes.isPresent()) {
+            return ok(changes.get()).build();
+        }
+
+        var coding = ContentCoding.negotiate(acceptEncoding).orElse(null);
+        if (coding == null) {
+            return status(NOT_ACCEPTABLE).build();
+        }
+        var snapshot = store.snapshot();
+        return snapshotResponse(snapshot, coding, encodedSnapshots.get(snapshot, coding))
+                .contentLocation(uriInfo.getBaseUriBuilder().path("bpn-directory").build())
                 .build();
     }
 
+    @Override
+    @Path("/bpn-directory/{bpn}")
+    @GET
+    public DidEntry getEntry(@PathParam("bpn") String bpn) {
+        var entry = store.find(bpn);
+        if (entry == null) {
+            throw new ObjectNotFoundException(DidEntry.class, bpn);
+        }
+        return entry;
+    }
+
+    @Override
+    @Path("/bpn-directory/resolve")
+    @POST
+    @Consumes(APPLICATION_JSON)
+    public Response resolve(List<String> bpns) {
+        if (bpns == null || bpns.contains(null)) {
+            throw new InvalidRequestException("Request body must be an array of BPNs");
+        }
+        var distinctBpns = new LinkedHashSet<>(bpns);
+        if (distinctBpns.size() > resolveLimit) {
+            throw new InvalidRequestException("At most %d BPNs can be resolved at once".formatted(resolveLimit));
+        }
+
+        // the entries are written as they are resolved, so the response is never materialized as a whole
+        return ok().entity((StreamingOutput) stream -> {
+            try (var generator = mapper.getFactory().createGenerator(stream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartObject();
+                var entries = store.find(distinctBpns).iterator();
+                while (entries.hasNext()) {
+                    var entry = entries.next();
+                    generator.writeStringField(entry.bpn(), entry.did());
+                }
+                generator.writeEndObject();
+            }
+        }).build();
+    }
+
+    @Override
+    @Path("/did-directory/{did}")
+    @GET
+    public List<DidEntry> getEntriesByDid(@PathParam("did") String did) {
+        var entries = store.findByDid(did);
+        if (entries.isEmpty()) {
+            throw new ObjectNotFoundException(DidEntry.class, did);
+        }
+        return entries;
+    }
+
+    private Response.ResponseBuilder snapshotResponse(DidEntrySnapshot snapshot, ContentCoding coding, ByteBuffer content) {
+        return encoded(ok(), snapshot, coding)
+                .entity((StreamingOutput) stream -> write(content, stream))
+                .header(CONTENT_LENGTH, content.remaining())
+                .header(ACCEPT_RANGES, "bytes");
+    }
+
+    private Response.ResponseBuilder rangeResponse(DidEntrySnapshot snapshot, ContentCoding coding, ByteBuffer content, ByteRange range) {
+        if (!range.satisfiable()) {
+            return encoded(status(REQUESTED_RANGE_NOT_SATISFIABLE), snapshot, coding)
+                    .header(CONTENT_RANGE, range.contentRange());
+        }
+        var slice = content.slice(content.position() + (int) range.first(), (int) range.size());
+        return encoded(status(PARTIAL_CONTENT), snapshot, coding)
+                .entity((StreamingOutput) stream -> write(slice, stream))
+                .header(CONTENT_LENGTH, slice.remaining())
+                .header(CONTENT_RANGE, range.contentRange());
+    }
+
+    private Response.ResponseBuilder encoded(Response.ResponseBuilder response, DidEntrySnapshot snapshot, ContentCoding coding) {
+        response.tag(entityTag(snapshot, coding))
+                .header(VARY, ACCEPT_ENCODING);
+        return coding == ContentCoding.IDENTITY ? response : response.encoding(coding.token());
+    }
+
+    /**
+     * Writes the content without copying it to the heap as a whole. Memory-mapped content is transferred in chunks.
+     */
+    private void write(ByteBuffer content, OutputStream stream) throws IOException {
+        if (content.hasArray()) {
+            stream.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+            return;
+        }
+        var channel = Channels.newChannel(stream);
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    /**
+     * Every coding is a different representation, so it needs its own strong ETag. GZIP keeps the plain version.
+     */
+    private EntityTag entityTag(DidEntrySnapshot snapshot, ContentCoding coding) {
+        var version = String.valueOf(snapshot.version());
+        return new EntityTag(coding == ContentCoding.GZIP ? version : version + "-" + coding.token());
+    }
+
+    private String quoted(EntityTag entityTag) {
+        return "\"" + entityTag.getValue() + "\"";
+    }
+
 }
@@ -25,11 +25,14 @@ import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.runtime.metamodel.annotation.Setting;
 import org.eclipse.edc.spi.system.ServiceExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
+import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.edc.web.spi.WebService;
 import org.eclipse.edc.web.spi.configuration.PortMapping;
 import org.eclipse.edc.web.spi.configuration.PortMappingRegistry;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 
+import java.nio.file.Path;
+
 import static org.eclipse.tractusx.bdrs.api.directory.DirectoryApiExtension.NAME;
 
 /**
@@ -44,9 +47,28 @@ public class DirectoryApiExtension implements ServiceExtension {
     @Setting(value = "Path for the Directory API", required = true)
     public static final String DIRECTORY_API_PATH = "web.http.directory.path";
     static final String CONTEXT_NAME = "directory";
+    static final int DEFAULT_RESOLVE_LIMIT = 1000;
+
+    @Setting(key = "edc.bdrs.directory.resolve.limit", description = "Maximum number of BPNs that can be resolved with a single batch request",
+            defaultValue = DEFAULT_RESOLVE_LIMIT + "")
+    private int resolveLimit;
+
+    @Setting(key = "edc.bdrs.directory.encoding.gzip.level", description = "GZIP compression level (1-9) of the directory. If not set, the compressed directory of the store is served as-is",
+            defaultValue = EncodedSnapshotCache.DEFAULT_GZIP_LEVEL + "")
+    private int gzipLevel;
+
+    @Setting(key = "edc.bdrs.directory.mapped.path", description = "Directory to which the encoded BPN directory is written and memory-mapped from. If not set, the directory is served from the heap. " +
+            "The files of outdated versions are deleted right away, but their space is only freed once the mapping is garbage collected, " +
+            "so the file system must have room for several versions of every coding, e.g. if it is a tmpfs",
+            required = false)
+    private String mappedPath;
+
     @Inject
     private DidEntryStore store;
 
+    @Inject
+    private TypeManager typeManager;
+
     @Inject
     private WebService webService;
 
@@ -65,7 +87,8 @@ public class DirectoryApiExtension implements ServiceExtension {
         var portMapping = new PortMapping(CONTEXT_NAME, port, path);
         portMappingRegistry.register(portMapping);
 
-        webService.registerResource(CONTEXT_NAME, new DirectoryApiController(store));
+        var mappedDirectory = mappedPath != null ? Path.of(mappedPath) : null;
+        webService.registerResource(CONTEXT_NAME, new DirectoryApiController(store, typeManager.getMapper(), resolveLimit, gzipLevel, mappedDirectory));
     }
 
 }
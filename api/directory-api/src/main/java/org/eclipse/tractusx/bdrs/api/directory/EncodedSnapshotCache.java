@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.api.directory;
+
+import io.airlift.compress.zstd.ZstdCompressor;
+import org.eclipse.edc.spi.EdcException;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Provides the content of the latest {@link DidEntrySnapshot} in all {@link ContentCoding}s. Each coding is encoded lazily
+ * and at most once per snapshot version, so the cost of encoding does not depend on the number of requests.
+ * <p>
+ * The GZIP content of the store is served as-is, unless a specific GZIP compression level is configured.
+ * <p>
+ * If a directory for mapped files is configured, every encoded content is written to a file in that directory once and
+ * memory-mapped from there, which keeps it off the Java heap. The file is deleted right after mapping, the mapping stays
+ * valid until the buffer is garbage collected. Only then is the space of the file freed, so with frequent versions and
+ * little garbage collection activity, the deleted files of several versions may occupy the directory. Files are not re-used
+ * across versions, because responses of an outdated version may still be read from their mapping.
+ */
+class EncodedSnapshotCache {
+    static final int DEFAULT_GZIP_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+    private final int gzipLevel;
+    private final Path mappedDirectory;
+    private final AtomicReference<Variants> latest = new AtomicReference<>();
+
+    EncodedSnapshotCache(int gzipLevel) {
+        this(gzipLevel, null);
+    }
+
+    /**
+     * Creates the cache.
+     *
+     * @param gzipLevel       the GZIP compression level, or {@link #DEFAULT_GZIP_LEVEL} to serve the GZIP content of the store as-is
+     * @param mappedDirectory the directory for memory-mapped files, or null to keep the encoded contents on the heap
+     */
+    EncodedSnapshotCache(int gzipLevel, @Nullable Path mappedDirectory) {
+        if (gzipLevel != DEFAULT_GZIP_LEVEL && (gzipLevel < Deflater.BEST_SPEED || gzipLevel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("GZIP compression level must be between %d and %d".formatted(Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION));
+        }
+        if (mappedDirectory != null && !Files.isDirectory(mappedDirectory)) {
+            throw new IllegalArgumentException("Directory for mapped files does not exist: " + mappedDirectory);
+        }
+        this.gzipLevel = gzipLevel;
+        this.mappedDirectory = mappedDirectory;
+    }
+
+    /**
+     * Returns the content of the snapshot in the given coding. The returned buffer must not be modified. It is positioned
+     * at the start of the content, and its remaining bytes are the exact content length.
+     */
+    ByteBuffer get(DidEntrySnapshot snapshot, ContentCoding coding) {
+        var variants = latest.updateAndGet(current -> current == null || current.snapshot.version() < snapshot.version() ? new Variants(snapshot) : current);
+        if (variants.snapshot.version() != snapshot.version()) {
+            // a newer snapshot was cached in the meantime, don't replace it with an outdated one
+            variants = new Variants(snapshot);
+        }
+        return variants.get(coding).duplicate();
+    }
+
+    /**
+     * The encoded contents of one snapshot.
+     */
+    private final class Variants {
+        private final DidEntrySnapshot snapshot;
+        private final Map<ContentCoding, ByteBuffer> encoded = new EnumMap<>(ContentCoding.class);
+
+        private Variants(DidEntrySnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        private synchronized ByteBuffer get(ContentCoding coding) {
+            var content = encoded.get(coding);
+            if (content == null) {
+                content = store(coding, encode(coding));
+                encoded.put(coding, content);
+            }
+            return content;
+        }
+
+        private byte[] encode(ContentCoding coding) {
+            return switch (coding) {
+                case IDENTITY -> identity();
+                case GZIP -> gzipLevel == DEFAULT_GZIP_LEVEL ? snapshot.content() : gzip(identity());
+                case ZSTD -> zstd(identity());
+            };
+        }
+
+        private byte[] identity() {
+            var identity = encoded.get(ContentCoding.IDENTITY);
+            if (identity != null && identity.hasArray()) {
+                return identity.array();
+            }
+            try (var stream = new GZIPInputStream(new ByteArrayInputStream(snapshot.content()))) {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new EdcException(e);
+            }
+        }
+
+        private byte[] gzip(byte[] content) {
+            var bas = new ByteArrayOutputStream();
+            try (var gzip = new LeveledGzipOutputStream(bas, gzipLevel)) {
+                gzip.write(content);
+            } catch (IOException e) {
+                throw new EdcException(e);
+            }
+            return bas.toByteArray();
+        }
+
+        private byte[] zstd(byte[] content) {
+            var compressor = new ZstdCompressor();
+            var compressed = new byte[compressor.maxCompressedLength(content.length)];
+            var length = compressor.compress(content, 0, content.length, compressed, 0, compressed.length);
+            return Arrays.copyOf(compressed, length);
+        }
+
+        private ByteBuffer store(ContentCoding coding, byte[] content) {
+            if (mappedDirectory == null) {
+                return ByteBuffer.wrap(content);
+            }
+            try {
+                var file = Files.createTempFile(mappedDirectory, "bpn-directory-%d-".formatted(snapshot.version()), "." + coding.token());
+                try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    var source = ByteBuffer.wrap(content);
+                    while (source.hasRemaining()) {
+                        channel.write(source);
+                    }
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, content.length);
+                } finally {
+                    delete(file);
+                }
+            } catch (IOException e) {
+                throw new EdcException("Failed to map directory content to file", e);
+            }
+        }
+
+        private void delete(Path file) {
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                // some platforms don't allow to delete a mapped file
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
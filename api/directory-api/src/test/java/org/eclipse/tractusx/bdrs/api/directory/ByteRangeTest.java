@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.api.directory;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeTest {
+    private static final long LENGTH = 100;
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "bytes=0-9 | bytes 0-9/100",
+            "bytes=10- | bytes 10-99/100",
+            "bytes=-10 | bytes 90-99/100",
+            "bytes=90-200 | bytes 90-99/100",
+            "bytes=-200 | bytes 0-99/100",
+            "BYTES= 3-4 | bytes 3-4/100"
+    })
+    void parse_satisfiable(String range, String contentRange) {
+        assertThat(ByteRange.parse(range, LENGTH)).hasValueSatisfying(byteRange -> {
+            assertThat(byteRange.satisfiable()).isTrue();
+            assertThat(byteRange.contentRange()).isEqualTo(contentRange);
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "bytes=100-", "bytes=150-200", "bytes=-0" })
+    void parse_unsatisfiable(String range) {
+        assertThat(ByteRange.parse(range, LENGTH)).hasValueSatisfying(byteRange -> {
+            assertThat(byteRange.satisfiable()).isFalse();
+            assertThat(byteRange.contentRange()).isEqualTo("bytes */100");
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "bytes=5-4", "bytes=0-1,5-6", "items=0-1", "bytes=a-b", "bytes=--5", "bytes=5" })
+    void parse_shouldIgnore(String range) {
+        assertThat(ByteRange.parse(range, LENGTH)).isEmpty();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.api.directory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentCodingTest {
+
+    @Test
+    void negotiate_whenNoHeader_shouldReturnGzip() {
+        assertThat(ContentCoding.negotiate(null)).contains(ContentCoding.GZIP);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "gzip, deflate | GZIP",
+            "x-gzip | GZIP",
+            "gzip, zstd | ZSTD",
+            "gzip, zstd;q=0.5 | GZIP",
+            "ZSTD;Q=0.8, gzip;q=0.2, identity;q=0.1 | ZSTD",
+            "zstd;q=0.8 | IDENTITY",
+            "br | IDENTITY",
+            "'' | IDENTITY",
+            "* | ZSTD",
+            "*;q=0.1, gzip | GZIP",
+            "zstd;q=0, * | GZIP",
+            "gzip;q=0, zstd;q=0 | IDENTITY",
+            "gzip;q=invalid | IDENTITY"
+    })
+    void negotiate(String acceptEncoding, ContentCoding expected) {
+        assertThat(ContentCoding.negotiate(acceptEncoding)).contains(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "identity;q=0", "br, identity;q=0", "*;q=0", "gzip;q=0, *;q=0" })
+    void negotiate_whenNothingAcceptable_shouldReturnEmpty(String acceptEncoding) {
+        assertThat(ContentCoding.negotiate(acceptEncoding)).isEmpty();
+    }
+}
@@ -19,27 +19,46 @@
 
 package org.eclipse.tractusx.bdrs.api.directory;
 
+import io.airlift.compress.zstd.ZstdDecompressor;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.path.json.JsonPath;
 import io.restassured.specification.RequestSpecification;
 import org.eclipse.edc.web.jersey.testfixtures.RestControllerTestBase;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryChanges;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.http.ContentType.JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 class DirectoryApiControllerTest extends RestControllerTestBase {
     private static final String BPN = "BPN123";
     private static final String DID = "did:web:localhost:member";
+    private static final int RESOLVE_LIMIT = 10;
 
     private DidEntryStore store;
 
@@ -52,25 +71,298 @@ class DirectoryApiControllerTest extends RestControllerTestBase {
             gzip.write(serialized.getBytes());
         }
 
-        when(store.entries()).thenReturn(serializedStream.toByteArray());
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, serializedStream.toByteArray()));
 
         var expectedJson = new JsonPath(serialized);
         baseRequest().get("")
                 .then()
                 .statusCode(200)
                 .contentType(JSON)
+                .header("ETag", "\"42\"")
                 .body("", equalTo(expectedJson.getMap("")));
     }
 
+    @Test
+    void verifyGetEntries_whenNotModified() {
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, new byte[0]));
+
+        baseRequest()
+                .header("If-None-Match", "\"42\"")
+                .get("")
+                .then()
+                .statusCode(304)
+                .header("ETag", "\"42\"");
+    }
+
+    @Test
+    void verifyGetEntries_whenModified() throws IOException {
+        var serializedStream = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(serializedStream)) {
+            gzip.write(objectMapper.writeValueAsBytes(Map.of(BPN, DID)));
+        }
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(43, serializedStream.toByteArray()));
+
+        baseRequest()
+                .header("If-None-Match", "\"42\"")
+                .get("")
+                .then()
+                .statusCode(200)
+                .header("ETag", "\"43\"")
+                .body(BPN, equalTo(DID));
+    }
+
+    @Test
+    void verifyGetEntries_zstd() throws IOException {
+        var serialized = objectMapper.writeValueAsBytes(Map.of(BPN, DID));
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, gzip(serialized)));
+
+        var response = rawRequest()
+                .header("Accept-Encoding", "gzip;q=0.5, zstd")
+                .get("")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", "zstd")
+                .header("ETag", "\"42-zstd\"")
+                .header("Vary", "Accept-Encoding")
+                .extract().asByteArray();
+
+        var decompressed = new byte[serialized.length];
+        var length = new ZstdDecompressor().decompress(response, 0, response.length, decompressed, 0, decompressed.length);
+        assertThat(length).isEqualTo(serialized.length);
+        assertThat(decompressed).isEqualTo(serialized);
+    }
+
+    @Test
+    void verifyGetEntries_identity() throws IOException {
+        var serialized = objectMapper.writeValueAsBytes(Map.of(BPN, DID));
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, gzip(serialized)));
+
+        rawRequest()
+                .header("Accept-Encoding", "identity")
+                .get("")
+                .then()
+                .statusCode(200)
+                .header("Content-Encoding", nullValue())
+                .header("Content-Length", String.valueOf(serialized.length))
+                .header("ETag", "\"42-identity\"")
+                .body(BPN, equalTo(DID));
+    }
+
+    @Test
+    void verifyGetEntries_whenNoCodingAcceptable() {
+        rawRequest()
+                .header("Accept-Encoding", "br, identity;q=0")
+                .get("")
+                .then()
+                .statusCode(406);
+    }
+
+    @Test
+    void verifyGetEntries_whenNotModified_zstd() {
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, new byte[0]));
+
+        rawRequest()
+                .header("Accept-Encoding", "zstd")
+                .header("If-None-Match", "\"42-zstd\"")
+                .get("")
+                .then()
+                .statusCode(304)
+                .header("Vary", "Accept-Encoding");
+    }
+
+    @Test
+    void verifyGetEntries_range() throws IOException {
+        var content = gzip(objectMapper.writeValueAsBytes(Map.of(BPN, DID)));
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, content));
+
+        var response = rawRequest()
+                .header("Range", "bytes=10-")
+                .header("If-Range", "\"42\"")
+                .get("")
+                .then()
+                .statusCode(206)
+                .header("Content-Range", "bytes 10-%d/%d".formatted(content.length - 1, content.length))
+                .header("Content-Length", String.valueOf(content.length - 10))
+                .header("ETag", "\"42\"")
+                .extract().asByteArray();
+
+        assertThat(response).isEqualTo(Arrays.copyOfRange(content, 10, content.length));
+    }
+
+    @Test
+    void verifyGetEntries_range_whenVersionChanged_shouldReturnAll() throws IOException {
+        var content = gzip(objectMapper.writeValueAsBytes(Map.of(BPN, DID)));
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(43, content));
+
+        var response = rawRequest()
+                .header("Range", "bytes=10-")
+                .header("If-Range", "\"42\"")
+                .get("")
+                .then()
+                .statusCode(200)
+                .header("Content-Range", nullValue())
+                .header("Accept-Ranges", "bytes")
+                .header("ETag", "\"43\"")
+                .extract().asByteArray();
+
+        assertThat(response).isEqualTo(content);
+    }
+
+    @Test
+    void verifyGetEntries_range_whenNotSatisfiable() throws IOException {
+        var content = gzip(objectMapper.writeValueAsBytes(Map.of(BPN, DID)));
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(42, content));
+
+        rawRequest()
+                .header("Range", "bytes=%d-".formatted(content.length))
+                .get("")
+                .then()
+                .statusCode(416)
+                .header("Content-Range", "bytes */" + content.length);
+    }
+
+    @Test
+    void verifyGetChanges() {
+        when(store.changes(42)).thenReturn(Optional.of(new DidEntryChanges(44, Map.of(BPN, DID), Set.of("BPN456"))));
+
+        baseRequest()
+                .queryParam("since", 42)
+                .get("/changes")
+                .then()
+                .statusCode(200)
+                .contentType(JSON)
+                .header("Content-Location", nullValue())
+                .body("version", equalTo(44))
+                .body("upserts." + BPN, equalTo(DID))
+                .body("deletions", contains("BPN456"));
+    }
+
+    @Test
+    void verifyGetChanges_whenNotAvailable_shouldReturnSnapshot() throws IOException {
+        var serializedStream = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(serializedStream)) {
+            gzip.write(objectMapper.writeValueAsBytes(Map.of(BPN, DID)));
+        }
+        when(store.changes(1)).thenReturn(Optional.empty());
+        when(store.snapshot()).thenReturn(new DidEntrySnapshot(44, serializedStream.toByteArray()));
+
+        baseRequest()
+                .queryParam("since", 1)
+                .get("/changes")
+                .then()
+                .statusCode(200)
+                .header("ETag", "\"44\"")
+                .header("Content-Location", endsWith("/bpn-directory"))
+                .body(BPN, equalTo(DID));
+    }
+
+    @Test
+    void verifyGetChanges_whenVersionMissing() {
+        baseRequest()
+                .get("/changes")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    void verifyGetEntry() {
+        when(store.find(BPN)).thenReturn(new DidEntry(BPN, DID));
+
+        baseRequest()
+                .get("/" + BPN)
+                .then()
+                .statusCode(200)
+                .contentType(JSON)
+                .body("bpn", equalTo(BPN))
+                .body("did", equalTo(DID));
+    }
+
+    @Test
+    void verifyGetEntry_whenNotFound() {
+        when(store.find(BPN)).thenReturn(null);
+
+        baseRequest()
+                .get("/" + BPN)
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    void verifyResolve() throws IOException {
+        when(store.find(any(Set.class))).thenReturn(Stream.of(new DidEntry(BPN, DID)));
+
+        baseRequest()
+                .contentType(JSON)
+                .body(objectMapper.writeValueAsString(List.of(BPN, "BPN456", BPN)))
+                .post("/resolve")
+                .then()
+                .statusCode(200)
+                .contentType(JSON)
+                .body("size()", equalTo(1))
+                .body(BPN, equalTo(DID));
+
+        verify(store).find(Set.of(BPN, "BPN456"));
+    }
+
+    @Test
+    void verifyResolve_whenLimitExceeded() throws IOException {
+        var bpns = IntStream.range(0, RESOLVE_LIMIT + 1).mapToObj(i -> "BPN" + i).toList();
+
+        baseRequest()
+                .contentType(JSON)
+                .body(objectMapper.writeValueAsString(bpns))
+                .post("/resolve")
+                .then()
+                .statusCode(400);
+    }
+
+    @Test
+    void verifyGetEntriesByDid() {
+        when(store.findByDid(DID)).thenReturn(List.of(new DidEntry(BPN, DID)));
+
+        given().baseUri("http://localhost:" + port).basePath("/did-directory")
+                .get("/" + DID)
+                .then()
+                .statusCode(200)
+                .contentType(JSON)
+                .body("bpn", contains(BPN))
+                .body("did", contains(DID));
+    }
+
+    @Test
+    void verifyGetEntriesByDid_whenNotFound() {
+        when(store.findByDid(DID)).thenReturn(List.of());
+
+        given().baseUri("http://localhost:" + port).basePath("/did-directory")
+                .get("/" + DID)
+                .then()
+                .statusCode(404);
+    }
+
     @Override
     protected Object controller() {
         store = mock(DidEntryStore.class);
-        return new DirectoryApiController(store);
+        return new DirectoryApiController(store, objectMapper, RESOLVE_LIMIT, Deflater.DEFAULT_COMPRESSION);
     }
 
     private RequestSpecification baseRequest() {
         return given().baseUri("http://localhost:" + port).basePath("/bpn-directory").when();
     }
 
+    /**
+     * A request that does not add its own Accept-Encoding header and does not decode the response.
+     */
+    private RequestSpecification rawRequest() {
+        return baseRequest().config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()));
+    }
+
+    private byte[] gzip(byte[] content) throws IOException {
+        var bas = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bas)) {
+            gzip.write(content);
+        }
+        return bas.toByteArray();
+    }
+
 }
 
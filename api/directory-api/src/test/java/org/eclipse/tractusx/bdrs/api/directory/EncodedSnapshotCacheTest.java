@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.api.directory;
+
+import io.airlift.compress.zstd.ZstdDecompressor;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class EncodedSnapshotCacheTest {
+    private static final byte[] CONTENT = "{\"BPN123\":\"did:web:localhost:member\"}".getBytes(StandardCharsets.UTF_8);
+
+    @ParameterizedTest
+    @EnumSource(ContentCoding.class)
+    void get_shouldEncode(ContentCoding coding) throws IOException {
+        var cache = new EncodedSnapshotCache(EncodedSnapshotCache.DEFAULT_GZIP_LEVEL);
+
+        assertThat(decode(cache.get(snapshot(42), coding), coding)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void get_whenDefaultGzipLevel_shouldServeStoreContent() throws IOException {
+        var cache = new EncodedSnapshotCache(EncodedSnapshotCache.DEFAULT_GZIP_LEVEL);
+        var snapshot = snapshot(42);
+
+        assertThat(cache.get(snapshot, ContentCoding.GZIP).array()).isSameAs(snapshot.content());
+    }
+
+    @Test
+    void get_whenGzipLevel_shouldRecompress() throws IOException {
+        var cache = new EncodedSnapshotCache(9);
+        var snapshot = snapshot(42);
+
+        var content = cache.get(snapshot, ContentCoding.GZIP);
+
+        assertThat(content.array()).isNotSameAs(snapshot.content());
+        assertThat(decode(content, ContentCoding.GZIP)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void get_shouldEncodeOncePerVersion() throws IOException {
+        var cache = new EncodedSnapshotCache(EncodedSnapshotCache.DEFAULT_GZIP_LEVEL);
+
+        var first = cache.get(snapshot(42), ContentCoding.ZSTD);
+        var second = cache.get(snapshot(42), ContentCoding.ZSTD);
+        var newer = cache.get(snapshot(43), ContentCoding.ZSTD);
+
+        assertThat(second.array()).isSameAs(first.array());
+        assertThat(newer.array()).isNotSameAs(first.array());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ContentCoding.class)
+    void get_whenMapped_shouldServeOffHeap(ContentCoding coding, @TempDir Path directory) throws IOException {
+        var cache = new EncodedSnapshotCache(EncodedSnapshotCache.DEFAULT_GZIP_LEVEL, directory);
+
+        var content = cache.get(snapshot(42), coding);
+
+        assertThat(content.isDirect()).isTrue();
+        assertThat(decode(content, coding)).isEqualTo(CONTENT);
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void create_whenInvalidGzipLevel_shouldThrow() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new EncodedSnapshotCache(10));
+    }
+
+    @Test
+    void create_whenMappedDirectoryMissing_shouldThrow(@TempDir Path directory) {
+        assertThatIllegalArgumentException().isThrownBy(() -> new EncodedSnapshotCache(EncodedSnapshotCache.DEFAULT_GZIP_LEVEL, directory.resolve("missing")));
+    }
+
+    private DidEntrySnapshot snapshot(long version) throws IOException {
+        var bas = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bas)) {
+            gzip.write(CONTENT);
+        }
+        return new DidEntrySnapshot(version, bas.toByteArray());
+    }
+
+    private byte[] decode(ByteBuffer content, ContentCoding coding) throws IOException {
+        var bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        return switch (coding) {
+            case IDENTITY -> bytes;
+            case GZIP -> {
+                try (var stream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                    yield stream.readAllBytes();
+                }
+            }
+            case ZSTD -> {
+                var decompressed = new byte[CONTENT.length];
+                var length = new ZstdDecompressor().decompress(bytes, 0, bytes.length, decompressed, 0, decompressed.length);
+                yield Arrays.copyOf(decompressed, length);
+            }
+        };
+    }
+}
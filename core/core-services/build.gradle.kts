@@ -26,6 +26,7 @@ dependencies {
     implementation(libs.edc.spi.core)
     implementation(libs.edc.lib.json)
     implementation(project(":spi:core-spi"))
+    implementation(project(":core:snapshot-lib"))
     testImplementation(testFixtures(project(":spi:core-spi")))
 }
 
@@ -22,11 +22,23 @@ package org.eclipse.tractusx.bdrs.core;
 import org.eclipse.edc.runtime.metamodel.annotation.Extension;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.runtime.metamodel.annotation.Provider;
+import org.eclipse.edc.runtime.metamodel.annotation.Setting;
+import org.eclipse.edc.spi.system.ExecutorInstrumentation;
 import org.eclipse.edc.spi.system.ServiceExtension;
-import org.eclipse.edc.spi.types.TypeManager;
+import org.eclipse.edc.spi.system.ServiceExtensionContext;
+import org.eclipse.tractusx.bdrs.core.store.CompactDidEntryStore;
+import org.eclipse.tractusx.bdrs.core.store.DidEntryJournal;
 import org.eclipse.tractusx.bdrs.core.store.InMemoryDidEntryStore;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+
 import static org.eclipse.tractusx.bdrs.core.BdrsCoreExtension.NAME;
 
 /**
@@ -36,8 +48,51 @@ import static org.eclipse.tractusx.bdrs.core.BdrsCoreExtension.NAME;
 public class BdrsCoreExtension implements ServiceExtension {
     public static final String NAME = "BDRS Core";
 
+    @Setting(key = "edc.bdrs.didentry.store.changelog.size", description = "Number of changes the in-memory store retains to serve directory deltas.",
+            defaultValue = InMemoryDidEntryStore.DEFAULT_CHANGE_LOG_SIZE + "")
+    private int changeLogSize;
+
+    @Setting(key = "edc.bdrs.didentry.store.snapshot.quietperiod", description = "Period in milliseconds without changes after which the in-memory store rebuilds the directory snapshot. " +
+            "If 0, the snapshot is rebuilt synchronously on every change.", defaultValue = "0")
+    private long quietPeriod;
+
+    @Setting(key = "edc.bdrs.didentry.store.snapshot.maxdelay", description = "Maximum time in milliseconds the directory snapshot of the in-memory store lags behind the changes, " +
+            "if a quiet period is set.", defaultValue = "1000")
+    private long maxDelay;
+
+    @Setting(key = "edc.bdrs.didentry.store.snapshot.segments", description = "Number of separately compressed segments of the directory snapshot, a power of two. " +
+            "After a change, only the affected segment is compressed again.", defaultValue = SegmentedSnapshotEncoder.DEFAULT_SEGMENTS + "")
+    private int snapshotSegments;
+
+    @Setting(key = "edc.bdrs.didentry.store.snapshot.parallelism", description = "Number of threads that compress snapshot segments in parallel. " +
+            "If 1, segments are compressed on the thread that rebuilds the snapshot.", defaultValue = "1")
+    private int snapshotParallelism;
+
+    @Setting(key = "edc.bdrs.didentry.store.snapshot.parallel.threshold", description = "Minimum number of entries to compress for which snapshot segments are compressed in parallel.",
+            defaultValue = SegmentedSnapshotEncoder.DEFAULT_PARALLEL_THRESHOLD + "")
+    private long snapshotParallelThreshold;
+
+    @Setting(key = "edc.bdrs.didentry.store.compact", description = "If true, the in-memory store holds the entries in packed form, which takes a fraction of the heap, " +
+            "but resolves BPNs by DID with a full scan. The snapshot is then always rebuilt synchronously.", defaultValue = "false")
+    private boolean compact;
+
+    @Setting(key = "edc.bdrs.didentry.store.persistence.path", description = "Directory in which the in-memory store persists its entries in a write-ahead log and a snapshot file, " +
+            "to restore them on restart. If not set, the entries are lost on restart.", required = false)
+    private String persistencePath;
+
+    @Setting(key = "edc.bdrs.didentry.store.persistence.compaction.threshold", description = "Size in bytes the write-ahead log may grow to before it is compacted into the snapshot file.",
+            defaultValue = DidEntryJournal.DEFAULT_COMPACTION_THRESHOLD + "")
+    private long compactionThreshold;
+
+    @Inject
+    private ExecutorInstrumentation executorInstrumentation;
+
     @Inject
-    private TypeManager typeManager;
+    private Clock clock;
+
+    private ScheduledExecutorService snapshotExecutor;
+    private ForkJoinPool compressionPool;
+    private DidEntryJournal journal;
 
     @Override
     public String name() {
@@ -45,8 +100,38 @@ public class BdrsCoreExtension implements ServiceExtension {
     }
 
     @Provider(isDefault = true)
-    public DidEntryStore defaultDidEntryStore() {
-        return new InMemoryDidEntryStore(typeManager.getMapper());
+    public DidEntryStore defaultDidEntryStore(ServiceExtensionContext context) {
+        if (snapshotParallelism > 1) {
+            compressionPool = new ForkJoinPool(snapshotParallelism);
+        }
+        var encoder = new SegmentedSnapshotEncoder(snapshotSegments, compressionPool, snapshotParallelThreshold);
+        if (compact) {
+            if (persistencePath != null) {
+                context.getMonitor().warning("The compact store does not support persistence, ignoring the persistence path");
+            }
+            return new CompactDidEntryStore(changeLogSize, encoder);
+        }
+        if (persistencePath != null) {
+            journal = new DidEntryJournal(Path.of(persistencePath), compactionThreshold);
+        }
+        if (quietPeriod > 0) {
+            snapshotExecutor = executorInstrumentation.instrument(Executors.newSingleThreadScheduledExecutor(), "bdrs-snapshot-rebuild");
+        }
+        return new InMemoryDidEntryStore(changeLogSize, encoder, Duration.ofMillis(quietPeriod), Duration.ofMillis(maxDelay),
+                snapshotExecutor, clock, context.getMonitor(), journal);
+    }
+
+    @Override
+    public void shutdown() {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+        }
+        if (compressionPool != null) {
+            compressionPool.shutdownNow();
+        }
+        if (journal != null) {
+            journal.close();
+        }
     }
 
 }
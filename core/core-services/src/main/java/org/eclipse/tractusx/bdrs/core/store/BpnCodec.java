@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+/**
+ * Packs Business Partner Numbers into primitive {@code long}s. A conforming BPN consists of the prefix {@code BPN}, the kind
+ * {@code L}, {@code S} or {@code A}, and a body of 12 upper-case alphanumeric characters, e.g. {@code BPNL00000003AYRE}.
+ * The body is read as a base-36 number, which fits into a {@code long}, so the BPN can be restored exactly from its kind
+ * and its key.
+ */
+final class BpnCodec {
+    static final int KINDS = 3;
+    static final int NONE = -1;
+
+    private static final String PREFIX = "BPN";
+    private static final String KIND_CHARS = "LSA";
+    private static final int BODY_LENGTH = 12;
+    private static final int LENGTH = PREFIX.length() + 1 + BODY_LENGTH;
+
+    private BpnCodec() {
+    }
+
+    /**
+     * Returns the kind of the BPN, or {@link #NONE} if it does not conform to the format and cannot be packed.
+     */
+    static int kind(String bpn) {
+        if (bpn.length() != LENGTH || !bpn.startsWith(PREFIX)) {
+            return NONE;
+        }
+        for (var i = LENGTH - BODY_LENGTH; i < LENGTH; i++) {
+            if (digit(bpn.charAt(i)) < 0) {
+                return NONE;
+            }
+        }
+        return KIND_CHARS.indexOf(bpn.charAt(PREFIX.length()));
+    }
+
+    /**
+     * Returns the key of a conforming BPN. Keys are never {@code 0}.
+     */
+    static long key(String bpn) {
+        var key = 0L;
+        for (var i = LENGTH - BODY_LENGTH; i < LENGTH; i++) {
+            key = key * 36 + digit(bpn.charAt(i));
+        }
+        // 36^12 - 1 < Long.MAX_VALUE, so the offset does not overflow
+        return key + 1;
+    }
+
+    /**
+     * Restores the BPN from its kind and key.
+     */
+    static String decode(int kind, long key) {
+        var chars = new char[LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        chars[PREFIX.length()] = KIND_CHARS.charAt(kind);
+        var body = key - 1;
+        for (var i = LENGTH - 1; i >= LENGTH - BODY_LENGTH; i--) {
+            chars[i] = Character.toUpperCase(Character.forDigit((int) (body % 36), 36));
+            body /= 36;
+        }
+        return new String(chars);
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
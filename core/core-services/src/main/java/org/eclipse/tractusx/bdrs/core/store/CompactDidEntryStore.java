@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.eclipse.edc.spi.EdcException;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
+import org.eclipse.tractusx.bdrs.snapshot.SnapshotEntries;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryChanges;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A non-persistent store implementation that holds the entries in packed form, for directories with millions of entries.
+ * <p>
+ * Conforming BPNs are packed into {@code long} keys, see {@link BpnCodec}, of open-addressing tables without an object per
+ * entry, and DIDs are stored prefix-deduplicated in a shared byte arena, see {@link DidArena}. Compared to the
+ * {@link InMemoryDidEntryStore}, an entry occupies a few tens of bytes instead of well over a hundred. BPNs that do not
+ * conform to the format are kept in plain maps.
+ * <p>
+ * There is no reverse index, {@link #findByDid(String)} scans all entries, comparing the packed DIDs without decoding
+ * them. Lookups share a read lock, writes are exclusive and rebuild the snapshot before they return, compressing only the
+ * segments they changed.
+ */
+public class CompactDidEntryStore implements DidEntryStore {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SegmentedSnapshotEncoder encoder;
+    private final DidEntryChangeLog changeLog;
+    private final Segment[] segments;
+    private DidArena arena = new DidArena();
+    private long version;
+    private volatile DidEntrySnapshot snapshot;
+
+    public CompactDidEntryStore() {
+        this(InMemoryDidEntryStore.DEFAULT_CHANGE_LOG_SIZE, new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS));
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param changeLogSize the number of changes that are retained to serve deltas, see {@link #changes(long)}
+     * @param encoder the encoder of the snapshot segments
+     */
+    public CompactDidEntryStore(int changeLogSize, SegmentedSnapshotEncoder encoder) {
+        this.encoder = encoder;
+        segments = new Segment[encoder.segments()];
+        for (var i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+        // versions start at the creation time, so that versions handed out before a restart are not re-used for different content
+        version = Instant.now().toEpochMilli();
+        changeLog = new DidEntryChangeLog(changeLogSize, version);
+        publish();
+    }
+
+    @Override
+    public DidEntrySnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Optional<DidEntryChanges> changes(long since) {
+        return changeLog.since(since);
+    }
+
+    @Override
+    public DidEntry find(String bpn) {
+        requireNonNull(bpn);
+        lock.readLock().lock();
+        try {
+            var did = get(bpn);
+            return did != null ? new DidEntry(bpn, did) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<DidEntry> find(Collection<String> bpns) {
+        lock.readLock().lock();
+        try {
+            var entries = new ArrayList<DidEntry>(bpns.size());
+            for (var bpn : bpns) {
+                var did = get(bpn);
+                if (did != null) {
+                    entries.add(new DidEntry(bpn, did));
+                }
+            }
+            return entries.stream();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<DidEntry> findByDid(String did) {
+        requireNonNull(did);
+        lock.readLock().lock();
+        try {
+            var matcher = arena.matcher(did);
+            var entries = new ArrayList<DidEntry>();
+            for (var segment : segments) {
+                for (var kind = 0; kind < BpnCodec.KINDS; kind++) {
+                    var packedKind = kind;
+                    segment.tables[kind].forEach((key, reference) -> {
+                        if (matcher.test(reference)) {
+                            entries.add(new DidEntry(BpnCodec.decode(packedKind, key), did));
+                        }
+                    });
+                }
+                segment.overflow.forEach((bpn, value) -> {
+                    if (value.equals(did)) {
+                        entries.add(new DidEntry(bpn, did));
+                    }
+                });
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(DidEntry entry) {
+        requireNonNull(entry);
+        lock.writeLock().lock();
+        try {
+            put(entry);
+            version++;
+            changeLog.upsert(version, entry.bpn(), entry.did());
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(Stream<DidEntry> entries) {
+        var list = entries.toList();
+        lock.writeLock().lock();
+        try {
+            // only applied if all entries are new
+            var bpns = new HashSet<String>();
+            for (var entry : list) {
+                if (!bpns.add(entry.bpn()) || get(entry.bpn()) != null) {
+                    throw new EdcException("Already exists: " + entry.bpn());
+                }
+            }
+            list.forEach(this::put);
+            version++;
+            // bulk changes are not recorded individually, deltas across them are served as full snapshot
+            changeLog.reset(version);
+            publish();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(String bpn) {
+        requireNonNull(bpn);
+        lock.writeLock().lock();
+        try {
+            var segment = segments[encoder.segmentOf(bpn)];
+            var kind = BpnCodec.kind(bpn);
+            var removed = false;
+            if (kind == BpnCodec.NONE) {
+                removed = segment.overflow.remove(bpn) != null;
+            } else {
+                var reference = segment.tables[kind].remove(BpnCodec.key(bpn));
+                if (reference != LongLongTable.MISSING) {
+                    arena.release(reference);
+                    removed = true;
+                }
+            }
+            if (removed) {
+                segment.member = null;
+                version++;
+                changeLog.delete(version, bpn);
+                publish();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String get(String bpn) {
+        var segment = segments[encoder.segmentOf(bpn)];
+        var kind = BpnCodec.kind(bpn);
+        if (kind == BpnCodec.NONE) {
+            return segment.overflow.get(bpn);
+        }
+        var reference = segment.tables[kind].get(BpnCodec.key(bpn));
+        return reference != LongLongTable.MISSING ? arena.get(reference) : null;
+    }
+
+    private void put(DidEntry entry) {
+        var segment = segments[encoder.segmentOf(entry.bpn())];
+        segment.member = null;
+        var kind = BpnCodec.kind(entry.bpn());
+        if (kind == BpnCodec.NONE) {
+            segment.overflow.put(entry.bpn(), entry.did());
+            return;
+        }
+        var previous = segment.tables[kind].put(BpnCodec.key(entry.bpn()), arena.add(entry.did()));
+        if (previous != LongLongTable.MISSING) {
+            arena.release(previous);
+        }
+    }
+
+    /**
+     * Compacts the arena if needed, and rebuilds the snapshot, compressing the segments that changed.
+     */
+    private void publish() {
+        if (arena.needsCompaction()) {
+            var compacted = arena.compacted();
+            for (var segment : segments) {
+                for (var table : segment.tables) {
+                    table.forEach((key, reference) -> table.put(key, compacted.copy(arena, reference)));
+                }
+            }
+            arena = compacted;
+        }
+        var changed = new SnapshotEntries[segments.length];
+        var count = 0L;
+        for (var i = 0; i < segments.length; i++) {
+            if (segments[i].member == null) {
+                changed[i] = segments[i]::forEach;
+                count += segments[i].size();
+            }
+        }
+        // the pool threads only read the segments, while this thread holds the write lock and waits for them
+        var members = encoder.encodeSegments(changed, count);
+        for (var i = 0; i < segments.length; i++) {
+            if (members[i] == null) {
+                members[i] = segments[i].member;
+            } else {
+                segments[i].member = members[i];
+            }
+        }
+        snapshot = new DidEntrySnapshot(version, encoder.assemble(members));
+    }
+
+    /**
+     * The entries of a snapshot segment, and their compressed member, or {@code null} if they changed since it was compressed.
+     */
+    private final class Segment {
+        private final LongLongTable[] tables = new LongLongTable[BpnCodec.KINDS];
+        private final Map<String, String> overflow = new HashMap<>();
+        private byte[] member;
+
+        private Segment() {
+            for (var kind = 0; kind < tables.length; kind++) {
+                tables[kind] = new LongLongTable();
+            }
+        }
+
+        private long size() {
+            var size = (long) overflow.size();
+            for (var table : tables) {
+                size += table.size();
+            }
+            return size;
+        }
+
+        private void forEach(BiConsumer<String, String> action) {
+            for (var kind = 0; kind < tables.length; kind++) {
+                var packedKind = kind;
+                tables[kind].forEach((key, reference) -> action.accept(BpnCodec.decode(packedKind, key), arena.get(reference)));
+            }
+            overflow.forEach(action);
+        }
+    }
+}
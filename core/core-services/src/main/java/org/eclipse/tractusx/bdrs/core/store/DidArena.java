@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongPredicate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stores DIDs in a shared byte array instead of one {@link String} each. DIDs of a dataspace mostly share a long prefix,
+ * e.g. {@code did:web:portal.example.com:}, so every DID is split after its last colon: the prefix is stored once in a
+ * table, and only the UTF-8 encoded remainder is appended to the arena, preceded by its length.
+ * <p>
+ * A DID is referenced by a {@code long} combining the index of its prefix and the offset of its remainder. Space of removed
+ * DIDs is not reclaimed individually, instead {@link #needsCompaction()} tells when the live DIDs should be copied into a
+ * fresh arena. Prefixes are never removed. This class is not thread-safe.
+ */
+final class DidArena {
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MIN_GARBAGE = 64 * 1024;
+
+    private final List<String> prefixes;
+    private final Map<String, Integer> prefixIndex;
+    private byte[] bytes;
+    private int length;
+    private int garbage;
+
+    DidArena() {
+        this(new ArrayList<>(), new HashMap<>(), MIN_CAPACITY);
+    }
+
+    private DidArena(List<String> prefixes, Map<String, Integer> prefixIndex, int capacity) {
+        this.prefixes = prefixes;
+        this.prefixIndex = prefixIndex;
+        this.bytes = new byte[Math.max(MIN_CAPACITY, capacity)];
+    }
+
+    /**
+     * Appends the DID and returns its reference.
+     */
+    long add(String did) {
+        var split = did.lastIndexOf(':') + 1;
+        var prefix = prefixIndex.computeIfAbsent(did.substring(0, split), p -> {
+            prefixes.add(p);
+            return prefixes.size() - 1;
+        });
+        return append(prefix, did.substring(split).getBytes(UTF_8), 0, -1);
+    }
+
+    /**
+     * Returns the DID of the reference.
+     */
+    String get(long reference) {
+        var offset = offset(reference);
+        var size = readLength(offset);
+        return prefixes.get(prefix(reference)) + new String(bytes, offset + lengthSize(size), size, UTF_8);
+    }
+
+    /**
+     * Marks the DID of the reference as removed.
+     */
+    void release(long reference) {
+        var size = readLength(offset(reference));
+        garbage += lengthSize(size) + size;
+    }
+
+    /**
+     * Returns a predicate that matches the references of the DID, without decoding the referenced DIDs.
+     */
+    LongPredicate matcher(String did) {
+        var split = did.lastIndexOf(':') + 1;
+        var prefix = prefixIndex.get(did.substring(0, split));
+        if (prefix == null) {
+            return reference -> false;
+        }
+        var remainder = did.substring(split).getBytes(UTF_8);
+        return reference -> {
+            if (prefix(reference) != prefix) {
+                return false;
+            }
+            var offset = offset(reference);
+            var size = readLength(offset);
+            var start = offset + lengthSize(size);
+            return size == remainder.length && Arrays.equals(bytes, start, start + size, remainder, 0, size);
+        };
+    }
+
+    /**
+     * Returns whether more than half of the arena is occupied by removed DIDs.
+     */
+    boolean needsCompaction() {
+        return garbage > MIN_GARBAGE && garbage > length - garbage;
+    }
+
+    /**
+     * Returns an empty arena that shares the prefixes of this one, to copy the live DIDs into with {@link #copy(DidArena, long)}.
+     */
+    DidArena compacted() {
+        return new DidArena(prefixes, prefixIndex, length - garbage);
+    }
+
+    /**
+     * Copies the DID of a reference of the source arena into this one and returns its new reference. Both arenas must
+     * share their prefixes.
+     */
+    long copy(DidArena source, long reference) {
+        var offset = offset(reference);
+        var size = source.readLength(offset);
+        return append(prefix(reference), source.bytes, offset + lengthSize(size), size);
+    }
+
+    /**
+     * Returns the number of bytes used by the arena, including removed DIDs.
+     */
+    int length() {
+        return length;
+    }
+
+    private long append(int prefix, byte[] source, int from, int size) {
+        var count = size < 0 ? source.length : size;
+        var required = length + lengthSize(count) + count;
+        if (required < 0) {
+            throw new IllegalStateException("DID arena exceeds maximum size");
+        }
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * bytes.length)));
+        }
+        var offset = length;
+        // the length is stored as a varint, remainders are usually shorter than 128 bytes
+        var position = offset;
+        var value = count;
+        while (value >= 0x80) {
+            bytes[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        System.arraycopy(source, from, bytes, position, count);
+        length = position + count;
+        return ((long) prefix << 32) | offset;
+    }
+
+    private int readLength(int offset) {
+        var value = 0;
+        var shift = 0;
+        var position = offset;
+        byte b;
+        do {
+            b = bytes[position++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int lengthSize(int length) {
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(length | 1) + 6) / 7;
+    }
+
+    private static int prefix(long reference) {
+        return (int) (reference >>> 32);
+    }
+
+    private static int offset(long reference) {
+        return (int) reference;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryChanges;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+
+/**
+ * A bounded ring buffer holding the most recent changes of a directory. Once the buffer is full, the oldest change is
+ * overwritten, and deltas starting before the overwritten change can no longer be served.
+ * <p>
+ * This class is thread-safe.
+ */
+class DidEntryChangeLog {
+    private final Change[] changes;
+    private int head;
+    private int size;
+    // every change with a version greater than the horizon is contained in the buffer
+    private long horizon;
+    private long version;
+
+    DidEntryChangeLog(int capacity, long version) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Change log capacity must not be negative");
+        }
+        changes = new Change[capacity];
+        horizon = version;
+        this.version = version;
+    }
+
+    /**
+     * Records that the DID of a BPN was set at a particular version.
+     */
+    synchronized void upsert(long version, String bpn, String did) {
+        append(new Change(version, bpn, did));
+    }
+
+    /**
+     * Records that a BPN was removed at a particular version.
+     */
+    synchronized void delete(long version, String bpn) {
+        append(new Change(version, bpn, null));
+    }
+
+    /**
+     * Discards all changes, e.g. after a bulk operation that was not recorded change-by-change. Deltas can only be served
+     * again for versions starting at the given version.
+     */
+    synchronized void reset(long version) {
+        head = 0;
+        size = 0;
+        horizon = version;
+        this.version = version;
+    }
+
+    /**
+     * Collapses all changes after the given version into a {@link DidEntryChanges}. Returns an empty {@link Optional} if
+     * the buffer does not cover all changes after that version.
+     */
+    synchronized Optional<DidEntryChanges> since(long since) {
+        if (since < horizon || since > version) {
+            return Optional.empty();
+        }
+        var upserts = new LinkedHashMap<String, String>();
+        var deletions = new LinkedHashSet<String>();
+        for (var i = 0; i < size; i++) {
+            var change = changes[(head + i) % changes.length];
+            if (change.version() <= since) {
+                continue;
+            }
+            if (change.did() != null) {
+                deletions.remove(change.bpn());
+                upserts.put(change.bpn(), change.did());
+            } else {
+                upserts.remove(change.bpn());
+                deletions.add(change.bpn());
+            }
+        }
+        return Optional.of(new DidEntryChanges(version, upserts, deletions));
+    }
+
+    private void append(Change change) {
+        version = change.version();
+        if (changes.length == 0) {
+            horizon = change.version();
+            return;
+        }
+        if (size == changes.length) {
+            horizon = Math.max(horizon, changes[head].version());
+            changes[head] = change;
+            head = (head + 1) % changes.length;
+        } else {
+            changes[(head + size) % changes.length] = change;
+            size++;
+        }
+    }
+
+    private record Change(long version, String bpn, String did) {
+    }
+}
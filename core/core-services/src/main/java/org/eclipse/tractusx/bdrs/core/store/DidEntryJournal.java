@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.eclipse.edc.spi.persistence.EdcPersistenceException;
+import org.eclipse.tractusx.bdrs.snapshot.SnapshotEntries;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Persists the entries of an {@link InMemoryDidEntryStore} in a directory, so that they survive restarts without a database.
+ * <p>
+ * Every committed change is appended to a write-ahead log and forced to disk before it becomes visible. Once the log grows
+ * beyond the compaction threshold, or the size of the snapshot if that is larger, all entries are written to a binary
+ * snapshot file, which atomically replaces the previous one, and the log is truncated. On startup, the snapshot and the log
+ * are read through memory-mappings and replayed.
+ * <p>
+ * Log records are checksummed, and every commit ends with a commit record: a commit that was only partially written,
+ * because the process died during the write, ends the replay and is cut off as a whole, so a batch of changes is either
+ * replayed completely or not at all. Replaying the log over a snapshot that already contains its changes yields the same entries,
+ * so a crash between replacing the snapshot and truncating the log is harmless.
+ * <p>
+ * This class is not thread-safe, it must only be used by the single writer of the store.
+ */
+public class DidEntryJournal implements AutoCloseable {
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 16 * 1024 * 1024;
+
+    static final String LOG_FILE = "bpn-directory.wal";
+    static final String SNAPSHOT_FILE = "bpn-directory.snapshot";
+
+    private static final int SNAPSHOT_MAGIC = 0x42445253;
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte UPSERT = 1;
+    private static final byte DELETE = 2;
+    private static final byte COMMIT = 3;
+
+    private final Path log;
+    private final Path snapshot;
+    private final long compactionThreshold;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private long snapshotSize;
+    private IOException failure;
+
+    /**
+     * Creates the journal.
+     *
+     * @param directory the existing directory the log and the snapshot are kept in
+     * @param compactionThreshold the size in bytes the log may grow to before it is compacted into the snapshot
+     */
+    public DidEntryJournal(Path directory, long compactionThreshold) {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Journal directory does not exist: " + directory);
+        }
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive");
+        }
+        this.log = directory.resolve(LOG_FILE);
+        this.snapshot = directory.resolve(SNAPSHOT_FILE);
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Reads the snapshot and the log, and opens the log for appending.
+     *
+     * @param upsert receives the entries of the snapshot and the upserts of the log, in order
+     * @param delete receives the deletions of the log, in order
+     */
+    void replay(BiConsumer<String, String> upsert, Consumer<String> delete) {
+        try {
+            if (Files.exists(snapshot)) {
+                readSnapshot(upsert);
+            }
+            channel = FileChannel.open(log, CREATE, READ, WRITE);
+            var valid = readLog(upsert, delete);
+            if (valid < channel.size()) {
+                channel.truncate(valid);
+                channel.force(false);
+            }
+            channel.position(valid);
+        } catch (IOException e) {
+            throw new EdcPersistenceException("Failed to replay BPN directory journal", e);
+        }
+    }
+
+    /**
+     * Records that the DID of a BPN was set. The record is written with the next {@link #commit()}.
+     */
+    void upsert(String bpn, String did) {
+        record(UPSERT, bpn, did);
+    }
+
+    /**
+     * Records that a BPN was removed. The record is written with the next {@link #commit()}.
+     */
+    void delete(String bpn) {
+        record(DELETE, bpn, null);
+    }
+
+    /**
+     * Appends the records since the previous commit to the log, followed by a commit record, and forces them to disk. If
+     * that fails, the records are discarded, and the log is cut back to its previous end. If even that fails, all further
+     * commits fail.
+     */
+    void commit() {
+        if (pending.size() == 0) {
+            return;
+        }
+        record(COMMIT, null, null);
+        var buffer = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        if (failure != null) {
+            throw new EdcPersistenceException("BPN directory journal is unusable after a failed write", failure);
+        }
+        long position = -1;
+        try {
+            position = channel.position();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            rollback(position, e);
+            throw new EdcPersistenceException("Failed to write BPN directory journal", e);
+        }
+    }
+
+    /**
+     * Returns whether the log should be compacted into the snapshot.
+     */
+    boolean needsCompaction() {
+        try {
+            return channel.size() > Math.max(compactionThreshold, snapshotSize);
+        } catch (IOException e) {
+            throw new EdcPersistenceException(e);
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the given entries, which must contain all changes committed so far, and truncates the log.
+     *
+     * @param entries all entries of the store
+     * @param count the number of entries
+     */
+    void compact(SnapshotEntries entries, int count) {
+        var temporary = snapshot.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (var file = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            var crc = new CRC32();
+            var stream = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(file), crc)));
+            stream.writeInt(SNAPSHOT_MAGIC);
+            stream.writeInt(SNAPSHOT_FORMAT);
+            stream.writeInt(count);
+            entries.forEach((bpn, did) -> {
+                try {
+                    writeString(stream, bpn);
+                    writeString(stream, did);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            stream.flush();
+            // the checksum is not part of the checked content
+            stream.writeInt((int) crc.getValue());
+            stream.flush();
+            file.force(true);
+            snapshotSize = file.size();
+        } catch (IOException | UncheckedIOException e) {
+            throw new EdcPersistenceException("Failed to write BPN directory snapshot", e);
+        }
+        try {
+            Files.move(temporary, snapshot, ATOMIC_MOVE, REPLACE_EXISTING);
+            // the rename must be durable before the log is truncated, otherwise a power loss could lose both
+            try (var directory = FileChannel.open(snapshot.getParent(), READ)) {
+                directory.force(true);
+            }
+            channel.truncate(0);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new EdcPersistenceException("Failed to compact BPN directory journal", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new EdcPersistenceException(e);
+        }
+    }
+
+    private void readSnapshot(BiConsumer<String, String> upsert) throws IOException {
+        try (var file = FileChannel.open(snapshot, READ)) {
+            snapshotSize = file.size();
+            if (snapshotSize < SNAPSHOT_HEADER_SIZE + Integer.BYTES || snapshotSize > Integer.MAX_VALUE) {
+                throw new EdcPersistenceException("Invalid BPN directory snapshot size: " + snapshotSize);
+            }
+            var buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, snapshotSize);
+            var checksum = buffer.getInt((int) snapshotSize - Integer.BYTES);
+            var crc = new CRC32();
+            crc.update(buffer.slice(0, (int) snapshotSize - Integer.BYTES));
+            if ((int) crc.getValue() != checksum || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_FORMAT) {
+                throw new EdcPersistenceException("BPN directory snapshot is corrupt: " + snapshot);
+            }
+            var count = buffer.getInt();
+            for (var i = 0; i < count; i++) {
+                upsert.accept(readString(buffer), readString(buffer));
+            }
+        }
+    }
+
+    /**
+     * Replays the commits of the log up to the first incomplete or corrupt one. The records of a commit are only replayed
+     * once its commit record was read.
+     *
+     * @return the size of the valid part of the log, which ends with the last complete commit
+     */
+    private long readLog(BiConsumer<String, String> upsert, Consumer<String> delete) throws IOException {
+        var size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new EdcPersistenceException("BPN directory journal is too large: " + size);
+        }
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        var crc = new CRC32();
+        var batch = new ArrayList<LoggedChange>();
+        var committed = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            var start = buffer.position();
+            var length = buffer.getInt();
+            var checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            var payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            buffer.position(start + RECORD_HEADER_SIZE + length);
+            var type = payload.get();
+            if (type == COMMIT) {
+                for (var change : batch) {
+                    if (change.did() != null) {
+                        upsert.accept(change.bpn(), change.did());
+                    } else {
+                        delete.accept(change.bpn());
+                    }
+                }
+                batch.clear();
+                committed = buffer.position();
+            } else {
+                var bpn = readString(payload);
+                batch.add(new LoggedChange(bpn, type == UPSERT ? readString(payload) : null));
+            }
+        }
+        return committed;
+    }
+
+    private void record(byte type, String bpn, String did) {
+        var payload = new ByteArrayOutputStream();
+        try {
+            var stream = new DataOutputStream(payload);
+            stream.writeByte(type);
+            if (bpn != null) {
+                writeString(stream, bpn);
+            }
+            if (did != null) {
+                writeString(stream, did);
+            }
+            var crc = new CRC32();
+            crc.update(payload.toByteArray());
+            var header = new DataOutputStream(pending);
+            header.writeInt(payload.size());
+            header.writeInt((int) crc.getValue());
+            payload.writeTo(pending);
+        } catch (IOException e) {
+            // cannot happen with in-memory streams
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void rollback(long position, IOException cause) {
+        try {
+            if (position < 0) {
+                failure = cause;
+            } else {
+                channel.truncate(position);
+                channel.position(position);
+            }
+        } catch (IOException e) {
+            failure = cause;
+        }
+    }
+
+    private static void writeString(DataOutputStream stream, String value) throws IOException {
+        var bytes = value.getBytes(UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * A record of a commit that was read, but not yet replayed. A {@code null} DID denotes a deletion.
+     */
+    private record LoggedChange(String bpn, String did) {
+    }
+}
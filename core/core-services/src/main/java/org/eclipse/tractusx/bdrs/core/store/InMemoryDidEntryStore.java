@@ -19,108 +19,440 @@
 
 package org.eclipse.tractusx.bdrs.core.store;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.edc.spi.EdcException;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
+import org.eclipse.tractusx.bdrs.snapshot.SnapshotEntries;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryChanges;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * A non-persistent, concurrent store implementation.
+ * <p>
+ * The entries are held in immutable {@link PersistentHashMap}s that are swapped atomically, so lookups never block. Writes
+ * are queued and applied by a single writer at a time: the first caller that finds the queue unattended applies all
+ * queued writes, including those of other callers, and publishes their result at once. Callers return once their write
+ * was published, so writes never fail because another write is still in progress.
+ * <p>
+ * By default, the snapshot is rebuilt by the writer after every batch of writes. If a quiet period is configured, writes
+ * only mark the snapshot as outdated, and it is rebuilt on a background thread once no change happened for the quiet
+ * period, but at the latest after the maximum delay. Bursts of changes are then coalesced into a single rebuild, at the
+ * price of a snapshot that lags behind the changes by at most the maximum delay. Lookups and deltas are never delayed.
+ * <p>
+ * The snapshot is encoded in segments, see {@link SegmentedSnapshotEncoder}, and a rebuild only compresses the segments
+ * that changed since the previous snapshot.
+ * <p>
+ * If a {@link DidEntryJournal} is configured, the entries are restored from it on creation, and every batch of writes is
+ * committed to it before it is published. A batch whose commit fails is not applied, and its callers receive the error.
  */
 public class InMemoryDidEntryStore implements DidEntryStore {
-    private static final int LOCK_TIMEOUT = 1000;
+    public static final int DEFAULT_CHANGE_LOG_SIZE = 10_000;
 
-    private final AtomicReference<byte[]> cache = new AtomicReference<>(new byte[0]);
-    private final Map<String, String> backingStore = new HashMap<>();
+    private final AtomicReference<DidEntrySnapshot> cache = new AtomicReference<>();
+    private final AtomicReference<State> state;
+    private final Queue<Write> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
 
-    private final ObjectMapper mapper;
-    private final ReadWriteLock lock;
+    private final SegmentedSnapshotEncoder encoder;
+    private final DidEntryChangeLog changeLog;
+    private final Duration quietPeriod;
+    private final Duration maxDelay;
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+    private final Monitor monitor;
+    private final DidEntryJournal journal;
+    // only accessed by the writer
+    private ScheduledFuture<?> pendingRebuild;
+    // only accessed by the thread that builds the snapshot
+    private EncodedSegments encodedSegments;
 
-    public InMemoryDidEntryStore(ObjectMapper mapper) {
-        this.mapper = mapper;
-        lock = new ReentrantReadWriteLock(true);
-        updateCache();
+    public InMemoryDidEntryStore() {
+        this(DEFAULT_CHANGE_LOG_SIZE);
+    }
 
+    /**
+     * Creates the store.
+     *
+     * @param changeLogSize the number of changes that are retained to serve deltas, see {@link #changes(long)}
+     */
+    public InMemoryDidEntryStore(int changeLogSize) {
+        this(changeLogSize, new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), Duration.ZERO, Duration.ZERO, null, Clock.systemUTC(), null);
+    }
+
+    /**
+     * Creates a store without persistence.
+     *
+     * @see #InMemoryDidEntryStore(int, SegmentedSnapshotEncoder, Duration, Duration, ScheduledExecutorService, Clock, Monitor, DidEntryJournal)
+     */
+    public InMemoryDidEntryStore(int changeLogSize, SegmentedSnapshotEncoder encoder, Duration quietPeriod, Duration maxDelay,
+                                 ScheduledExecutorService executor, Clock clock, Monitor monitor) {
+        this(changeLogSize, encoder, quietPeriod, maxDelay, executor, clock, monitor, null);
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param changeLogSize the number of changes that are retained to serve deltas, see {@link #changes(long)}
+     * @param encoder the encoder of the snapshot segments
+     * @param quietPeriod the period without changes after which the snapshot is rebuilt, or {@link Duration#ZERO} to rebuild synchronously on every change
+     * @param maxDelay the maximum time the snapshot lags behind the changes, i.e. the staleness bound
+     * @param executor the single-threaded executor the snapshot is rebuilt on. Only required if a quiet period is set.
+     * @param clock the clock used to determine the staleness
+     * @param monitor the monitor rebuilds and compactions are reported to. Only required if a quiet period or a journal is set.
+     * @param journal the journal the entries are restored from and changes are persisted to, or {@code null} to keep the entries in memory only
+     */
+    public InMemoryDidEntryStore(int changeLogSize, SegmentedSnapshotEncoder encoder, Duration quietPeriod, Duration maxDelay,
+                                 ScheduledExecutorService executor, Clock clock, Monitor monitor, DidEntryJournal journal) {
+        if (quietPeriod.isNegative() || maxDelay.isNegative()) {
+            throw new IllegalArgumentException("Quiet period and maximum delay must not be negative");
+        }
+        this.encoder = encoder;
+        this.quietPeriod = quietPeriod;
+        this.maxDelay = maxDelay;
+        this.executor = quietPeriod.isZero() ? null : requireNonNull(executor, "executor");
+        this.clock = clock;
+        this.monitor = quietPeriod.isZero() && journal == null ? null : requireNonNull(monitor, "monitor");
+        this.journal = journal;
+        // versions start at the creation time, so that versions handed out before a restart are not re-used for different content
+        var restored = new Transaction(Instant.now().toEpochMilli(), new SegmentedMap(encoder), PersistentHashMap.empty());
+        if (journal != null) {
+            journal.replay((bpn, did) -> restored.put(new DidEntry(bpn, did)), restored::remove);
+        }
+        var initial = new State(restored.version, restored.entries, restored.reverseIndex, 0);
+        state = new AtomicReference<>(initial);
+        changeLog = new DidEntryChangeLog(changeLogSize, initial.version());
+        cache.set(createSnapshot(initial));
+        if (journal != null) {
+            monitor.info("Restored %d BPN directory entries from journal".formatted(initial.entries().size()));
+            compact(initial);
+        }
     }
 
     @Override
-    public byte[] entries() {
+    public DidEntrySnapshot snapshot() {
         return cache.get();
     }
 
+    @Override
+    public Optional<DidEntryChanges> changes(long since) {
+        return changeLog.since(since);
+    }
+
+    /**
+     * Returns for how long the snapshot has been lagging behind the changes. It is bounded by the maximum delay, plus
+     * the time it takes to rebuild the snapshot. Zero if the snapshot is up to date.
+     */
+    public Duration staleness() {
+        var current = state.get();
+        if (cache.get().version() >= current.version()) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(Math.max(0, clock.millis() - current.unpublishedSince()));
+    }
+
+    @Override
+    public DidEntry find(String bpn) {
+        requireNonNull(bpn);
+        var did = state.get().entries().get(bpn);
+        return did != null ? new DidEntry(bpn, did) : null;
+    }
+
+    @Override
+    public List<DidEntry> findByDid(String did) {
+        requireNonNull(did);
+        var bpns = state.get().reverseIndex().get(did);
+        if (bpns == null) {
+            return List.of();
+        }
+        return bpns.stream()
+                .map(bpn -> new DidEntry(bpn, did))
+                .toList();
+    }
+
     @Override
     public void save(DidEntry entry) {
         requireNonNull(entry);
-        writeLock(() -> {
-            backingStore.put(entry.bpn(), entry.did());
-            updateCache();
+        write(transaction -> {
+            transaction.put(entry);
+            transaction.version++;
+            var version = transaction.version;
+            transaction.changes.add(log -> log.upsert(version, entry.bpn(), entry.did()));
+            transaction.records.add(journal -> journal.upsert(entry.bpn(), entry.did()));
         });
     }
 
     @Override
     public void save(Stream<DidEntry> entries) {
-        writeLock(() -> {
-            entries.forEach(entry -> {
-                if (backingStore.containsKey(entry.bpn())) {
+        // consume the stream on the calling thread, the write may be applied by another one
+        var list = entries.toList();
+        write(transaction -> {
+            var working = new Transaction(transaction.version, transaction.entries, transaction.reverseIndex);
+            for (var entry : list) {
+                if (working.entries.containsKey(entry.bpn())) {
                     throw new EdcException("Already exists: " + entry.bpn());
                 }
-                backingStore.put(entry.bpn(), entry.did());
-            });
-            updateCache();
+                working.put(entry);
+            }
+            // only applied if all entries are new
+            transaction.entries = working.entries;
+            transaction.reverseIndex = working.reverseIndex;
+            transaction.version++;
+            var version = transaction.version;
+            // bulk changes are not recorded individually, deltas across them are served as full snapshot
+            transaction.changes.add(log -> log.reset(version));
+            list.forEach(entry -> transaction.records.add(journal -> journal.upsert(entry.bpn(), entry.did())));
         });
     }
 
     @Override
     public void delete(String bpn) {
         requireNonNull(bpn);
-        writeLock(() -> {
-            backingStore.remove(bpn);
-            updateCache();
+        write(transaction -> {
+            if (transaction.remove(bpn)) {
+                transaction.version++;
+                var version = transaction.version;
+                transaction.changes.add(log -> log.delete(version, bpn));
+                transaction.records.add(journal -> journal.delete(bpn));
+            }
         });
-        updateCache();
     }
 
-    private void updateCache() {
-        var bas = new ByteArrayOutputStream();
-        try (var gzip = new GZIPOutputStream(bas)) {
-            gzip.write(mapper.writeValueAsBytes(backingStore));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Queues the write, applies all queued writes unless another caller is already doing so, and waits until the write
+     * was published.
+     */
+    private void write(Consumer<Transaction> operation) {
+        var write = new Write(operation, new CompletableFuture<>());
+        writes.add(write);
+        drain();
+        try {
+            write.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new EdcException(e.getCause());
         }
-        cache.set(bas.toByteArray());
     }
 
     /**
-     * Attempts to obtain a write lock.
+     * Applies all queued writes as long as there are any and no other caller does. A caller that finds the queue attended
+     * can leave, because the attending caller checks the queue again after releasing it.
      */
-    private void writeLock(Runnable work) {
-        try {
-            if (!lock.writeLock().tryLock(LOCK_TIMEOUT, MILLISECONDS)) {
-                throw new EdcException("Timeout acquiring write lock");
-            }
+    private void drain() {
+        while (!writes.isEmpty() && writing.compareAndSet(false, true)) {
+            var applied = new ArrayList<Write>();
             try {
-                work.run();
+                var previous = state.get();
+                var transaction = new Transaction(previous.version(), previous.entries(), previous.reverseIndex());
+                for (var write = writes.poll(); write != null; write = writes.poll()) {
+                    try {
+                        write.operation().accept(transaction);
+                        applied.add(write);
+                    } catch (RuntimeException e) {
+                        write.done().completeExceptionally(e);
+                    }
+                }
+                if (transaction.version != previous.version()) {
+                    persist(transaction);
+                    publish(previous, transaction);
+                }
+                applied.forEach(write -> write.done().complete(null));
+            } catch (RuntimeException | Error e) {
+                // the other callers are waiting for their writes, they must not be left hanging
+                applied.forEach(write -> write.done().completeExceptionally(e));
             } finally {
-                lock.writeLock().unlock();
+                writing.set(false);
             }
-        } catch (InterruptedException e) {
-            //noinspection ResultOfMethodCallIgnored
-            Thread.interrupted();
-            throw new EdcException(e);
         }
     }
 
+    /**
+     * Commits the writes of the transaction to the journal, if there is one.
+     */
+    private void persist(Transaction transaction) {
+        if (journal != null) {
+            transaction.records.forEach(record -> record.accept(journal));
+            journal.commit();
+        }
+    }
+
+    /**
+     * Compacts the journal into a snapshot file if it grew too large. The writes are already persisted in the log, so a
+     * failure is only reported.
+     */
+    private void compact(State current) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (journal.needsCompaction()) {
+                journal.compact(current.entries()::forEach, current.entries().size());
+                monitor.debug(() -> "Compacted BPN directory journal at version %d".formatted(current.version()));
+            }
+        } catch (RuntimeException e) {
+            monitor.warning("Failed to compact BPN directory journal", e);
+        }
+    }
+
+    /**
+     * Makes the state of the transaction visible, and rebuilds the snapshot right away or schedules a rebuild.
+     */
+    private void publish(State previous, Transaction transaction) {
+        var now = clock.millis();
+        // the time of the first change that is not contained in the snapshot
+        var unpublishedSince = cache.get().version() >= previous.version() ? now : previous.unpublishedSince();
+        var current = new State(transaction.version, transaction.entries, transaction.reverseIndex, unpublishedSince);
+        state.set(current);
+        transaction.changes.forEach(change -> change.accept(changeLog));
+        compact(current);
+
+        if (executor == null) {
+            cache.set(createSnapshot(current));
+            return;
+        }
+        if (pendingRebuild != null) {
+            pendingRebuild.cancel(false);
+        }
+        var delay = Math.min(quietPeriod.toMillis(), unpublishedSince + maxDelay.toMillis() - now);
+        pendingRebuild = executor.schedule(this::rebuild, Math.max(0, delay), MILLISECONDS);
+    }
+
+    /**
+     * Rebuilds the snapshot in the background if it is outdated. The state is immutable, so writes can continue meanwhile.
+     */
+    private void rebuild() {
+        try {
+            var current = state.get();
+            var previous = cache.get();
+            if (previous.version() >= current.version()) {
+                return;
+            }
+            var staleness = staleness();
+            var snapshot = createSnapshot(current);
+            cache.accumulateAndGet(snapshot, (cached, rebuilt) -> rebuilt.version() > cached.version() ? rebuilt : cached);
+            monitor.debug(() -> "Rebuilt BPN directory snapshot version %d, coalesced %d changes, staleness %d ms"
+                    .formatted(snapshot.version(), snapshot.version() - previous.version(), staleness.toMillis()));
+        } catch (RuntimeException e) {
+            monitor.severe("Failed to rebuild BPN directory snapshot", e);
+        }
+    }
+
+    /**
+     * Serializes and compresses the entries of the state. Segments that are unchanged since the previous snapshot are
+     * not compressed again, which is detected by the identity of their maps.
+     */
+    private DidEntrySnapshot createSnapshot(State state) {
+        var sources = new Object[encoder.segments()];
+        var changed = new SnapshotEntries[encoder.segments()];
+        var count = 0L;
+        for (var i = 0; i < sources.length; i++) {
+            var segment = state.entries().segment(i);
+            sources[i] = segment;
+            if (encodedSegments == null || encodedSegments.sources()[i] != segment) {
+                changed[i] = segment::forEach;
+                count += segment.size();
+            }
+        }
+        var members = encoder.encodeSegments(changed, count);
+        for (var i = 0; i < members.length; i++) {
+            if (members[i] == null) {
+                members[i] = encodedSegments.members()[i];
+            }
+        }
+        encodedSegments = new EncodedSegments(sources, members);
+        return new DidEntrySnapshot(state.version(), encoder.assemble(members));
+    }
+
+    /**
+     * A published state of the store.
+     *
+     * @param unpublishedSince the time of the first change that was not yet contained in the snapshot when this state was published
+     */
+    private record State(long version, SegmentedMap entries, PersistentHashMap<String, Set<String>> reverseIndex,
+                         long unpublishedSince) {
+    }
+
+    /**
+     * The compressed members of the segments, and the segment maps they were compressed from.
+     */
+    private record EncodedSegments(Object[] sources, byte[][] members) {
+    }
+
+    private record Write(Consumer<Transaction> operation, CompletableFuture<Void> done) {
+    }
+
+    /**
+     * The state of the store while the writer applies a batch of writes.
+     */
+    private static final class Transaction {
+        private long version;
+        private SegmentedMap entries;
+        // maps each DID to the BPNs mapped to it. The sets are immutable.
+        private PersistentHashMap<String, Set<String>> reverseIndex;
+        private final List<Consumer<DidEntryChangeLog>> changes = new ArrayList<>();
+        private final List<Consumer<DidEntryJournal>> records = new ArrayList<>();
+
+        private Transaction(long version, SegmentedMap entries, PersistentHashMap<String, Set<String>> reverseIndex) {
+            this.version = version;
+            this.entries = entries;
+            this.reverseIndex = reverseIndex;
+        }
+
+        private void put(DidEntry entry) {
+            var previousDid = entries.get(entry.bpn());
+            entries = entries.put(entry.bpn(), entry.did());
+            if (previousDid != null) {
+                removeFromReverseIndex(entry.bpn(), previousDid);
+            }
+            var bpns = reverseIndex.get(entry.did());
+            var updated = bpns == null ? new HashSet<String>() : new HashSet<>(bpns);
+            updated.add(entry.bpn());
+            reverseIndex = reverseIndex.put(entry.did(), Set.copyOf(updated));
+        }
+
+        private boolean remove(String bpn) {
+            var did = entries.get(bpn);
+            if (did == null) {
+                return false;
+            }
+            entries = entries.remove(bpn);
+            removeFromReverseIndex(bpn, did);
+            return true;
+        }
+
+        private void removeFromReverseIndex(String bpn, String did) {
+            var bpns = reverseIndex.get(did);
+            if (bpns == null) {
+                return;
+            }
+            var updated = new HashSet<>(bpns);
+            updated.remove(bpn);
+            reverseIndex = updated.isEmpty() ? reverseIndex.remove(did) : reverseIndex.put(did, Set.copyOf(updated));
+        }
+    }
 }
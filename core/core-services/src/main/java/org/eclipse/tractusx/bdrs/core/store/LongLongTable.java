@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+/**
+ * An open-addressing hash table with linear probing that maps primitive {@code long} keys to non-negative {@code long}
+ * values, without boxing and without a node object per entry. Removed entries are not marked with tombstones, instead the
+ * following entries of the probe sequence are shifted back.
+ * <p>
+ * The key {@code 0} is reserved to mark empty slots. This class is not thread-safe.
+ */
+final class LongLongTable {
+    static final long MISSING = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    private int shift;
+
+    LongLongTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of the key, or {@link #MISSING}.
+     */
+    long get(long key) {
+        for (var slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Maps the key to the value, and returns the previous value, or {@link #MISSING}.
+     */
+    long put(long key, long value) {
+        if (key == 0 || value < 0) {
+            throw new IllegalArgumentException("Key must not be 0 and value must not be negative");
+        }
+        var slot = slot(key);
+        for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                var previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // keep the load factor at or below 3/4
+        if (++size > (keys.length >> 2) * 3) {
+            resize(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Removes the key, and returns its value, or {@link #MISSING}.
+     */
+    long remove(long key) {
+        var slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+        var value = values[slot];
+        // shift back the following entries of the probe sequence that would no longer be reachable
+        var gap = slot;
+        for (var next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            var home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+        return value;
+    }
+
+    /**
+     * Performs the action for every entry. The action may replace the value of the current entry with
+     * {@link #put(long, long)}, but must not add or remove entries.
+     */
+    void forEach(Action action) {
+        for (var slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void resize(int capacity) {
+        var oldKeys = keys;
+        var oldValues = values;
+        allocate(capacity);
+        for (var i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                var slot = slot(oldKeys[i]);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+        size = 0;
+    }
+
+    @FunctionalInterface
+    interface Action {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash array mapped trie (HAMT). Every modification returns a new map that shares all unchanged nodes with
+ * the original one, so it only copies the path to the modified entry, i.e. at most seven nodes of at most 32 slots.
+ * Instances can be read by any number of threads without synchronization.
+ * <p>
+ * Null keys and values are not supported.
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value mapped to the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map in which the key is mapped to the value. Returns this map if it already contains that mapping.
+     */
+    PersistentHashMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(value);
+        var added = new boolean[1];
+        var newRoot = root.put(new Entry(key, value), hash(key), 0, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the key. Returns this map if it does not contain the key.
+     */
+    PersistentHashMap<K, V> remove(K key) {
+        var newRoot = root.remove(key, hash(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    /**
+     * Performs the action for every entry, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((key, value) -> action.accept((K) key, (V) value));
+    }
+
+    private static int hash(Object key) {
+        var hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int index(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private record Entry(Object key, Object value) {
+    }
+
+    private sealed interface Node permits BitmapNode, CollisionNode {
+        Object get(Object key, int hash, int shift);
+
+        Node put(Entry entry, int hash, int shift, boolean[] added);
+
+        /**
+         * Returns the node without the key, or null if it became empty.
+         */
+        Node remove(Object key, int hash, int shift);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * A node with up to 32 slots, each holding either an entry or a child node. Only the occupied slots are stored, their
+     * positions are encoded in the bitmap.
+     */
+    private static final class BitmapNode implements Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        public Object get(Object key, int hash, int shift) {
+            var bit = 1 << index(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            var slot = slots[position(bit)];
+            if (slot instanceof Node child) {
+                return child.get(key, hash, shift + BITS);
+            }
+            var entry = (Entry) slot;
+            return key.equals(entry.key()) ? entry.value() : null;
+        }
+
+        @Override
+        public Node put(Entry entry, int hash, int shift, boolean[] added) {
+            var bit = 1 << index(hash, shift);
+            var position = position(bit);
+            if ((bitmap & bit) == 0) {
+                var newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, position);
+                newSlots[position] = entry;
+                System.arraycopy(slots, position, newSlots, position + 1, slots.length - position);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            var slot = slots[position];
+            if (slot instanceof Node child) {
+                var newChild = child.put(entry, hash, shift + BITS, added);
+                return newChild == child ? this : replace(position, newChild);
+            }
+            var existing = (Entry) slot;
+            if (existing.key().equals(entry.key())) {
+                return existing.value().equals(entry.value()) ? this : replace(position, entry);
+            }
+            added[0] = true;
+            return replace(position, merge(existing, hash(existing.key()), entry, hash, shift + BITS));
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            var bit = 1 << index(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            var position = position(bit);
+            var slot = slots[position];
+            if (slot instanceof Node child) {
+                var newChild = child.remove(key, hash, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild == null) {
+                    return without(bit, position);
+                }
+                // pull a single remaining entry up, so that the trie stays as shallow as possible
+                if (newChild instanceof BitmapNode node && node.slots.length == 1 && node.slots[0] instanceof Entry entry) {
+                    return replace(position, entry);
+                }
+                if (newChild instanceof CollisionNode node && node.entries.length == 1) {
+                    return replace(position, node.entries[0]);
+                }
+                return replace(position, newChild);
+            }
+            return key.equals(((Entry) slot).key()) ? without(bit, position) : this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (var slot : slots) {
+                if (slot instanceof Node child) {
+                    child.forEach(action);
+                } else {
+                    var entry = (Entry) slot;
+                    action.accept(entry.key(), entry.value());
+                }
+            }
+        }
+
+        private int position(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private BitmapNode replace(int position, Object slot) {
+            var newSlots = slots.clone();
+            newSlots[position] = slot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        private BitmapNode without(int bit, int position) {
+            if (slots.length == 1) {
+                return null;
+            }
+            var newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, position);
+            System.arraycopy(slots, position + 1, newSlots, position, newSlots.length - position);
+            return new BitmapNode(bitmap ^ bit, newSlots);
+        }
+
+        private static Node merge(Entry first, int firstHash, Entry second, int secondHash, int shift) {
+            if (shift >= Integer.SIZE) {
+                return new CollisionNode(new Entry[]{ first, second });
+            }
+            var firstIndex = index(firstHash, shift);
+            var secondIndex = index(secondHash, shift);
+            if (firstIndex == secondIndex) {
+                return new BitmapNode(1 << firstIndex, new Object[]{ merge(first, firstHash, second, secondHash, shift + BITS) });
+            }
+            var slots = firstIndex < secondIndex ? new Object[]{ first, second } : new Object[]{ second, first };
+            return new BitmapNode((1 << firstIndex) | (1 << secondIndex), slots);
+        }
+    }
+
+    /**
+     * A leaf for entries whose keys have the same hash.
+     */
+    private static final class CollisionNode implements Node {
+        private final Entry[] entries;
+
+        private CollisionNode(Entry[] entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Object get(Object key, int hash, int shift) {
+            for (var entry : entries) {
+                if (key.equals(entry.key())) {
+                    return entry.value();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Node put(Entry entry, int hash, int shift, boolean[] added) {
+            for (var i = 0; i < entries.length; i++) {
+                if (entries[i].key().equals(entry.key())) {
+                    if (entries[i].value().equals(entry.value())) {
+                        return this;
+                    }
+                    var newEntries = entries.clone();
+                    newEntries[i] = entry;
+                    return new CollisionNode(newEntries);
+                }
+            }
+            var newEntries = Arrays.copyOf(entries, entries.length + 1);
+            newEntries[entries.length] = entry;
+            added[0] = true;
+            return new CollisionNode(newEntries);
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            for (var i = 0; i < entries.length; i++) {
+                if (entries[i].key().equals(key)) {
+                    if (entries.length == 1) {
+                        return null;
+                    }
+                    var newEntries = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, newEntries, 0, i);
+                    System.arraycopy(entries, i + 1, newEntries, i, newEntries.length - i);
+                    return new CollisionNode(newEntries);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (var entry : entries) {
+                action.accept(entry.key(), entry.value());
+            }
+        }
+    }
+}
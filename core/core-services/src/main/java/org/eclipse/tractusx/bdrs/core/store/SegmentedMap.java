@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map from BPNs to DIDs that is partitioned into the segments of a {@link SegmentedSnapshotEncoder}, each
+ * held in a {@link PersistentHashMap}. A modification only replaces the map of the affected segment, so the segments
+ * that did not change can be recognized by identity.
+ */
+final class SegmentedMap {
+    private final SegmentedSnapshotEncoder encoder;
+    private final PersistentHashMap<String, String>[] segments;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    SegmentedMap(SegmentedSnapshotEncoder encoder) {
+        this.encoder = encoder;
+        this.segments = new PersistentHashMap[encoder.segments()];
+        Arrays.fill(segments, PersistentHashMap.empty());
+        this.size = 0;
+    }
+
+    private SegmentedMap(SegmentedSnapshotEncoder encoder, PersistentHashMap<String, String>[] segments, int size) {
+        this.encoder = encoder;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the DID of the BPN, or null if there is none.
+     */
+    String get(String bpn) {
+        return segments[encoder.segmentOf(bpn)].get(bpn);
+    }
+
+    boolean containsKey(String bpn) {
+        return get(bpn) != null;
+    }
+
+    SegmentedMap put(String bpn, String did) {
+        var index = encoder.segmentOf(bpn);
+        var segment = segments[index];
+        var updated = segment.put(bpn, did);
+        return updated == segment ? this : with(index, updated, size - segment.size() + updated.size());
+    }
+
+    SegmentedMap remove(String bpn) {
+        var index = encoder.segmentOf(bpn);
+        var segment = segments[index];
+        var updated = segment.remove(bpn);
+        return updated == segment ? this : with(index, updated, size - 1);
+    }
+
+    /**
+     * Returns the entries of the segment. The returned map is the same instance as long as the segment does not change.
+     */
+    PersistentHashMap<String, String> segment(int index) {
+        return segments[index];
+    }
+
+    void forEach(BiConsumer<String, String> action) {
+        for (var segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    private SegmentedMap with(int index, PersistentHashMap<String, String> segment, int newSize) {
+        var newSegments = segments.clone();
+        newSegments[index] = segment;
+        return new SegmentedMap(encoder, newSegments, newSize);
+    }
+}
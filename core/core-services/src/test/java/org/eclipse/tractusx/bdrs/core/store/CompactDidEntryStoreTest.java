@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryStoreTestBase;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactDidEntryStoreTest extends DidEntryStoreTestBase {
+    private final CompactDidEntryStore store = new CompactDidEntryStore();
+
+    @Test
+    void find_whenPacked_shouldRestoreBpnAndDid() {
+        store.save(new DidEntry("BPNL00000003AYRE", "did:web:portal.example.com:BPNL00000003AYRE"));
+        store.save(new DidEntry("BPNS0000000008ZZ", "did:web:portal.example.com:BPNS0000000008ZZ"));
+        store.save(new DidEntry("BPNA00000000001A", "did:web:other.example.com"));
+
+        assertThat(store.find("BPNL00000003AYRE")).isEqualTo(new DidEntry("BPNL00000003AYRE", "did:web:portal.example.com:BPNL00000003AYRE"));
+        assertThat(store.find("BPNA00000000001A")).isEqualTo(new DidEntry("BPNA00000000001A", "did:web:other.example.com"));
+        assertThat(store.find("BPNS00000003AYRE")).isNull();
+        assertThat(store.findByDid("did:web:portal.example.com:BPNS0000000008ZZ")).containsExactly(new DidEntry("BPNS0000000008ZZ", "did:web:portal.example.com:BPNS0000000008ZZ"));
+        assertThat(deserialize(store.entries())).hasSize(3)
+                .containsEntry("BPNL00000003AYRE", "did:web:portal.example.com:BPNL00000003AYRE")
+                .containsEntry("BPNA00000000001A", "did:web:other.example.com");
+    }
+
+    @Test
+    void save_whenManyUpdates_shouldCompactDids() {
+        var compactStore = new CompactDidEntryStore(10, new SegmentedSnapshotEncoder(4));
+        IntStream.range(0, 100).forEach(i -> compactStore.save(new DidEntry("BPNL%012d".formatted(i), "did:web:initial:" + i)));
+
+        IntStream.range(0, 10_000).forEach(i -> compactStore.update(new DidEntry("BPNL%012d".formatted(i % 100), "did:web:portal.example.com:updated-" + i)));
+
+        assertThat(compactStore.find("BPNL000000000042")).isEqualTo(new DidEntry("BPNL000000000042", "did:web:portal.example.com:updated-9942"));
+        assertThat(compactStore.findByDid("did:web:initial:42")).isEmpty();
+        assertThat(deserialize(compactStore.entries())).hasSize(100)
+                .containsEntry("BPNL000000000099", "did:web:portal.example.com:updated-9999");
+    }
+
+    @Test
+    void changes_whenChangeLogOverflows() {
+        var smallStore = new CompactDidEntryStore(2, new SegmentedSnapshotEncoder(4));
+        var initial = smallStore.snapshot().version();
+
+        smallStore.save(new DidEntry("BPNL000000000001", "did:web:1"));
+        var afterFirst = smallStore.snapshot().version();
+        smallStore.save(new DidEntry("BPNL000000000002", "did:web:2"));
+        smallStore.save(new DidEntry("bpn3", "did:web:3"));
+
+        assertThat(smallStore.changes(initial)).isEmpty();
+        assertThat(smallStore.changes(afterFirst)).hasValueSatisfying(c -> assertThat(c.upserts()).containsOnlyKeys("BPNL000000000002", "bpn3"));
+    }
+
+    @Override
+    protected DidEntryStore getStore() {
+        return store;
+    }
+}
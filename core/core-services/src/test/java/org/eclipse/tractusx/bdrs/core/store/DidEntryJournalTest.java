@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.eclipse.edc.spi.persistence.EdcPersistenceException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DidEntryJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void replay_shouldRestoreCommittedRecords() {
+        try (var journal = open(1024)) {
+            journal.upsert("bpn1", "did:web:1");
+            journal.upsert("bpn2", "did:web:2");
+            journal.delete("bpn1");
+            journal.commit();
+            journal.upsert("bpn3", "did:web:3");
+        }
+
+        assertThat(replay(1024)).containsOnly(Map.entry("bpn2", "did:web:2"));
+    }
+
+    @Test
+    void replay_whenLastRecordIncomplete_shouldCutItOff() throws IOException {
+        try (var journal = open(1024)) {
+            journal.upsert("bpn1", "did:web:1");
+            journal.commit();
+            journal.upsert("bpn2", "did:web:2");
+            journal.commit();
+        }
+        var log = directory.resolve(DidEntryJournal.LOG_FILE);
+        var content = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(content, content.length - 3));
+
+        try (var journal = open(1024)) {
+            journal.upsert("bpn3", "did:web:3");
+            journal.commit();
+        }
+
+        assertThat(replay(1024)).containsOnlyKeys("bpn1", "bpn3");
+    }
+
+    @Test
+    void replay_whenCommitIncomplete_shouldDiscardItsRecords() throws IOException {
+        try (var journal = open(1024)) {
+            journal.upsert("bpn1", "did:web:1");
+            journal.commit();
+            journal.upsert("bpn2", "did:web:2");
+            journal.upsert("bpn3", "did:web:3");
+            journal.delete("bpn1");
+            journal.commit();
+        }
+        // cut off the commit record, all records of the batch are intact
+        var log = directory.resolve(DidEntryJournal.LOG_FILE);
+        var content = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(content, content.length - 9));
+
+        assertThat(replay(1024)).containsOnly(Map.entry("bpn1", "did:web:1"));
+    }
+
+    @Test
+    void compact_shouldReplaceLogWithSnapshot() throws IOException {
+        var entries = Map.of("bpn1", "did:web:1", "bpn2", "did:web:\u00fc");
+        try (var journal = open(16)) {
+            entries.forEach(journal::upsert);
+            journal.commit();
+            assertThat(journal.needsCompaction()).isTrue();
+
+            journal.compact(entries::forEach, entries.size());
+
+            assertThat(journal.needsCompaction()).isFalse();
+        }
+
+        assertThat(Files.size(directory.resolve(DidEntryJournal.LOG_FILE))).isZero();
+        assertThat(replay(16)).isEqualTo(entries);
+    }
+
+    @Test
+    void replay_whenSnapshotCorrupt_shouldThrow() throws IOException {
+        try (var journal = open(16)) {
+            journal.compact(Map.of("bpn1", "did:web:1")::forEach, 1);
+        }
+        var snapshot = directory.resolve(DidEntryJournal.SNAPSHOT_FILE);
+        var content = Files.readAllBytes(snapshot);
+        content[content.length / 2] ^= 1;
+        Files.write(snapshot, content);
+
+        assertThatThrownBy(() -> replay(16)).isInstanceOf(EdcPersistenceException.class);
+    }
+
+    private DidEntryJournal open(long compactionThreshold) {
+        var journal = new DidEntryJournal(directory, compactionThreshold);
+        journal.replay((bpn, did) -> { }, bpn -> { });
+        return journal;
+    }
+
+    private Map<String, String> replay(long compactionThreshold) {
+        var entries = new HashMap<String, String>();
+        try (var journal = new DidEntryJournal(directory, compactionThreshold)) {
+            journal.replay(entries::put, entries::remove);
+        }
+        return entries;
+    }
+}
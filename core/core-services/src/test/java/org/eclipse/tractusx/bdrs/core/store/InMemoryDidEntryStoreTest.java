@@ -19,14 +19,125 @@
 
 package org.eclipse.tractusx.bdrs.core.store;
 
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStoreTestBase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class InMemoryDidEntryStoreTest extends DidEntryStoreTestBase {
-    private final InMemoryDidEntryStore store = new InMemoryDidEntryStore(mapper);
+    private final InMemoryDidEntryStore store = new InMemoryDidEntryStore();
+
+    @Test
+    void changes_whenChangeLogOverflows() {
+        var smallStore = new InMemoryDidEntryStore(2);
+        var initial = smallStore.snapshot().version();
+
+        smallStore.save(new DidEntry("bpn1", "did:web:1"));
+        var afterFirst = smallStore.snapshot().version();
+        smallStore.save(new DidEntry("bpn2", "did:web:2"));
+        smallStore.save(new DidEntry("bpn3", "did:web:3"));
+
+        assertThat(smallStore.changes(initial)).isEmpty();
+        assertThat(smallStore.changes(afterFirst)).hasValueSatisfying(c -> assertThat(c.upserts()).containsOnlyKeys("bpn2", "bpn3"));
+    }
+
+    @Test
+    void save_whenConcurrent_shouldApplyAll() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var futures = IntStream.range(0, 4)
+                    .mapToObj(thread -> executor.submit(() -> IntStream.range(0, 50).forEach(i -> store.save(new DidEntry("bpn" + thread + "-" + i, "did:web:" + thread)))))
+                    .toList();
+            for (var future : futures) {
+                future.get(10, SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(deserialize(store.entries())).hasSize(200);
+        assertThat(store.findByDid("did:web:2")).hasSize(50);
+    }
+
+    @Test
+    void save_whenWriteBehind_shouldCoalesceRebuilds() {
+        var executor = mock(ScheduledExecutorService.class);
+        var future = mock(ScheduledFuture.class);
+        when(executor.schedule(any(Runnable.class), anyLong(), any())).thenReturn(future);
+        var clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L, 1100L, 1200L, 1300L);
+        var writeBehindStore = new InMemoryDidEntryStore(InMemoryDidEntryStore.DEFAULT_CHANGE_LOG_SIZE, new SegmentedSnapshotEncoder(4), Duration.ofMillis(100), Duration.ofMillis(150),
+                executor, clock, mock(Monitor.class));
+        var initial = writeBehindStore.snapshot();
+
+        writeBehindStore.save(new DidEntry("bpn1", "did:web:1"));
+        writeBehindStore.save(new DidEntry("bpn2", "did:web:2"));
+
+        assertThat(writeBehindStore.snapshot()).isSameAs(initial);
+        assertThat(writeBehindStore.find("bpn2")).isNotNull();
+        assertThat(writeBehindStore.changes(initial.version())).hasValueSatisfying(c -> assertThat(c.upserts()).containsOnlyKeys("bpn1", "bpn2"));
+        assertThat(writeBehindStore.staleness()).isEqualTo(Duration.ofMillis(200));
+
+        var rebuild = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).schedule(rebuild.capture(), eq(100L), any());
+        // the second rebuild is capped by the maximum delay
+        verify(executor).schedule(rebuild.capture(), eq(50L), any());
+        verify(future).cancel(false);
+
+        rebuild.getValue().run();
+
+        assertThat(writeBehindStore.snapshot().version()).isEqualTo(initial.version() + 2);
+        assertThat(deserialize(writeBehindStore.snapshot().content())).containsOnlyKeys("bpn1", "bpn2");
+        assertThat(writeBehindStore.staleness()).isEqualTo(Duration.ZERO);
+        verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), any());
+    }
+
+    @Test
+    void create_whenJournal_shouldRestoreEntries(@TempDir Path directory) {
+        var persistentStore = persistentStore(directory);
+        persistentStore.save(Stream.of(new DidEntry("bpn1", "did:web:1"), new DidEntry("bpn2", "did:web:2")));
+        persistentStore.update(new DidEntry("bpn1", "did:web:updated"));
+        persistentStore.delete("bpn2");
+        persistentStore.save(new DidEntry("bpn3", "did:web:3"));
+
+        var restored = persistentStore(directory);
+
+        assertThat(restored.find("bpn1")).isEqualTo(new DidEntry("bpn1", "did:web:updated"));
+        assertThat(restored.find("bpn2")).isNull();
+        assertThat(restored.findByDid("did:web:3")).containsExactly(new DidEntry("bpn3", "did:web:3"));
+        assertThat(deserialize(restored.entries())).containsOnlyKeys("bpn1", "bpn3");
+    }
 
     @Override
     protected DidEntryStore getStore() {
         return store;
     }
+
+    private InMemoryDidEntryStore persistentStore(Path directory) {
+        return new InMemoryDidEntryStore(InMemoryDidEntryStore.DEFAULT_CHANGE_LOG_SIZE, new SegmentedSnapshotEncoder(4), Duration.ZERO, Duration.ZERO, null,
+                Clock.systemUTC(), mock(Monitor.class), new DidEntryJournal(directory, DidEntryJournal.DEFAULT_COMPACTION_THRESHOLD));
+    }
 }
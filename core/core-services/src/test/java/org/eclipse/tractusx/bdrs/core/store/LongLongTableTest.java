@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongLongTableTest {
+
+    @Test
+    void put_shouldReturnPreviousValue() {
+        var table = new LongLongTable();
+
+        assertThat(table.put(42, 1)).isEqualTo(LongLongTable.MISSING);
+        assertThat(table.put(42, 2)).isEqualTo(1);
+        assertThat(table.get(42)).isEqualTo(2);
+        assertThat(table.get(43)).isEqualTo(LongLongTable.MISSING);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void put_whenKeyReserved_shouldThrow() {
+        assertThatThrownBy(() -> new LongLongTable().put(0, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void randomOperations_shouldBehaveLikeHashMap() {
+        var random = new Random(42);
+        var table = new LongLongTable();
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (var i = 0; i < 100_000; i++) {
+            // a small key space, so that probe sequences collide and removals shift entries back
+            var key = 1 + (long) random.nextInt(2_000);
+            var value = (long) random.nextInt(1_000_000);
+            if (random.nextInt(3) == 0) {
+                assertThat(table.remove(key)).isEqualTo(expected.getOrDefault(key, LongLongTable.MISSING));
+                expected.remove(key);
+            } else {
+                assertThat(table.put(key, value)).isEqualTo(expected.getOrDefault(key, LongLongTable.MISSING));
+                expected.put(key, value);
+            }
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(table.get(key)).isEqualTo(value));
+        Map<Long, Long> actual = new HashMap<>();
+        table.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+    }
+}
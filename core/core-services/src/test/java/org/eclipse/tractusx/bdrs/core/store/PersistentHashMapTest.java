@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.core.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentHashMapTest {
+
+    @Test
+    void put_shouldNotModifyOriginal() {
+        PersistentHashMap<String, String> empty = PersistentHashMap.empty();
+
+        var map = empty.put("key", "value");
+
+        assertThat(empty.isEmpty()).isTrue();
+        assertThat(empty.get("key")).isNull();
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get("key")).isEqualTo("value");
+    }
+
+    @Test
+    void put_whenUnchanged_shouldReturnSame() {
+        var map = PersistentHashMap.<String, String>empty().put("key", "value");
+
+        assertThat(map.put("key", "value")).isSameAs(map);
+        assertThat(map.put("key", "other").get("key")).isEqualTo("other");
+    }
+
+    @Test
+    void remove_whenMissing_shouldReturnSame() {
+        var map = PersistentHashMap.<String, String>empty().put("key", "value");
+
+        assertThat(map.remove("other")).isSameAs(map);
+        assertThat(map.remove("key").isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldHandleHashCollisions() {
+        // "Aa" and "BB" have the same hash code
+        var map = PersistentHashMap.<String, String>empty()
+                .put("Aa", "1")
+                .put("BB", "2")
+                .put("AaAa", "3")
+                .put("BBBB", "4");
+
+        assertThat(map.size()).isEqualTo(4);
+        assertThat(map.get("Aa")).isEqualTo("1");
+        assertThat(map.get("BB")).isEqualTo("2");
+
+        var removed = map.remove("Aa");
+        assertThat(removed.get("Aa")).isNull();
+        assertThat(removed.get("BB")).isEqualTo("2");
+        assertThat(removed.size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldBehaveLikeHashMap() {
+        var random = new Random(42);
+        var expected = new HashMap<String, String>();
+        PersistentHashMap<String, String> map = PersistentHashMap.empty();
+        var checkpoint = map;
+        var checkpointContent = Map.<String, String>of();
+
+        for (var i = 0; i < 50_000; i++) {
+            var key = "BPN" + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                var value = "did:web:" + random.nextInt(100);
+                expected.put(key, value);
+                map = map.put(key, value);
+            }
+            if (i == 25_000) {
+                checkpoint = map;
+                checkpointContent = Map.copyOf(expected);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(toMap(map)).isEqualTo(expected);
+        assertThat(toMap(checkpoint)).isEqualTo(checkpointContent);
+    }
+
+    private Map<String, String> toMap(PersistentHashMap<String, String> map) {
+        var result = new HashMap<String, String>();
+        map.forEach(result::put);
+        return result;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.snapshot;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import org.eclipse.edc.spi.EdcException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes the BPN Directory as a sequence of independently compressed segments. Each BPN belongs to one of a fixed number
+ * of hash-partitioned segments, and every segment is compressed as a GZIP member of its own. After a change, only the
+ * members of the affected segments have to be compressed again, and the snapshot is assembled by concatenating the
+ * members, which is a valid multi-member GZIP stream (RFC 1952, section 2.2) that decompresses to a single JSON object.
+ * <p>
+ * Entries are streamed through a {@link com.fasterxml.jackson.core.JsonGenerator} straight into the compressor, so the
+ * uncompressed JSON is never materialized. The compressed output is collected in a buffer that is re-used by subsequent
+ * encodings on the same thread, and only copied once into an array of its final size.
+ * <p>
+ * Since the members are independent, like the blocks of {@code pigz}, they can be compressed in parallel: if a pool is
+ * configured, {@link #encodeSegments(SnapshotEntries[], long)} compresses the segments on the pool once they contain at
+ * least the threshold of entries, below that the coordination overhead outweighs the gain.
+ */
+public class SegmentedSnapshotEncoder {
+    public static final int DEFAULT_SEGMENTS = 64;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50_000;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final int BUFFER_SIZE = 8192;
+    // buffers that grew larger than this are not retained, so that a single large segment does not pin the memory
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    // BPNs and DIDs are written as consecutive root-level strings, separated by explicitly written colons and commas
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().setRootValueSeparator(null);
+    private static final ThreadLocal<OutputBuffer> BUFFERS = ThreadLocal.withInitial(OutputBuffer::new);
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] OPEN_BRACE = { '{' };
+    private static final byte[] CLOSE_BRACE = { '}' };
+    private static final byte[] OPEN = member("{");
+    private static final byte[] SEPARATOR = member(",");
+    private static final byte[] CLOSE = member("}");
+
+    private final int segments;
+    private final int shift;
+    private final ForkJoinPool pool;
+    private final long parallelThreshold;
+
+    /**
+     * Creates an encoder that compresses all segments on the calling thread.
+     *
+     * @param segments the number of segments, a power of two
+     */
+    public SegmentedSnapshotEncoder(int segments) {
+        this(segments, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates the encoder.
+     *
+     * @param segments the number of segments, a power of two
+     * @param pool the pool to compress segments on in parallel, or {@code null} to compress them on the calling thread
+     * @param parallelThreshold the minimum number of entries to compress for which the pool is used
+     */
+    public SegmentedSnapshotEncoder(int segments, ForkJoinPool pool, long parallelThreshold) {
+        if (segments < 1 || segments > MAX_SEGMENTS || Integer.bitCount(segments) != 1) {
+            throw new IllegalArgumentException("Number of segments must be a power of two between 1 and %d, but was %d".formatted(MAX_SEGMENTS, segments));
+        }
+        this.segments = segments;
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(segments);
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int segments() {
+        return segments;
+    }
+
+    /**
+     * Returns the segment the BPN belongs to.
+     */
+    public int segmentOf(String bpn) {
+        if (segments == 1) {
+            return 0;
+        }
+        // fibonacci hashing takes the upper bits, so that the lower bits remain well distributed within a segment
+        return (bpn.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Compresses the entries of one segment into a GZIP member, which contains the entries as JSON object members
+     * without the enclosing braces. The member only depends on the entries and their order, so entries that are passed in a
+     * deterministic order are encoded identically by every process.
+     *
+     * @return the member, or an empty array if there are no entries
+     */
+    public byte[] encodeSegment(SnapshotEntries entries) {
+        var buffer = BUFFERS.get();
+        buffer.reset();
+        var empty = new boolean[]{ true };
+        try (var generator = JSON_FACTORY.createGenerator(new GZIPOutputStream(buffer, BUFFER_SIZE))) {
+            entries.forEach((bpn, did) -> {
+                try {
+                    if (!empty[0]) {
+                        generator.writeRaw(',');
+                    }
+                    empty[0] = false;
+                    generator.writeString(bpn);
+                    generator.writeRaw(':');
+                    generator.writeString(did);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            throw new EdcException("Failed to encode snapshot segment", e);
+        } finally {
+            if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+                BUFFERS.remove();
+            }
+        }
+        return empty[0] ? EMPTY : buffer.toByteArray();
+    }
+
+    /**
+     * Decompresses a member as returned by {@link #encodeSegment(SnapshotEntries)} and passes its entries to the consumer.
+     */
+    public void decodeSegment(byte[] member, BiConsumer<String, String> consumer) {
+        if (member.length == 0) {
+            return;
+        }
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(member), BUFFER_SIZE);
+             var parser = JSON_FACTORY.createParser(new SequenceInputStream(Collections.enumeration(
+                     List.of(new ByteArrayInputStream(OPEN_BRACE), gzip, new ByteArrayInputStream(CLOSE_BRACE)))))) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var bpn = parser.currentName();
+                parser.nextToken();
+                consumer.accept(bpn, parser.getText());
+            }
+        } catch (IOException e) {
+            throw new EdcException("Failed to decode snapshot segment", e);
+        }
+    }
+
+    /**
+     * Compresses the entries of multiple segments, in parallel if a pool is configured and there are at least as many
+     * entries as the threshold.
+     *
+     * @param entries the entries of each segment, or {@code null} for segments that need not be compressed
+     * @param count the total number of entries of the segments to compress
+     * @return the members as returned by {@link #encodeSegment(SnapshotEntries)}, or {@code null} for the segments that were not compressed
+     */
+    public byte[][] encodeSegments(SnapshotEntries[] entries, long count) {
+        var members = new byte[entries.length][];
+        if (pool == null || count < parallelThreshold) {
+            for (var i = 0; i < entries.length; i++) {
+                if (entries[i] != null) {
+                    members[i] = encodeSegment(entries[i]);
+                }
+            }
+            return members;
+        }
+        var tasks = new ArrayList<ForkJoinTask<?>>();
+        for (var i = 0; i < entries.length; i++) {
+            if (entries[i] != null) {
+                var segment = i;
+                tasks.add(pool.submit(() -> {
+                    members[segment] = encodeSegment(entries[segment]);
+                }));
+            }
+        }
+        // joining makes the members written by the pool threads visible
+        tasks.forEach(ForkJoinTask::join);
+        return members;
+    }
+
+    /**
+     * Concatenates the members of all segments to the compressed snapshot.
+     *
+     * @param members the members as returned by {@link #encodeSegment(SnapshotEntries)}, one per segment
+     */
+    public byte[] assemble(byte[][] members) {
+        if (members.length != segments) {
+            throw new IllegalArgumentException("Expected %d segments, but got %d".formatted(segments, members.length));
+        }
+        var length = OPEN.length + CLOSE.length;
+        var nonEmpty = 0;
+        for (var member : members) {
+            if (member.length > 0) {
+                length += member.length;
+                nonEmpty++;
+            }
+        }
+        length += Math.max(0, nonEmpty - 1) * SEPARATOR.length;
+
+        var snapshot = new byte[length];
+        var position = copy(OPEN, snapshot, 0);
+        var first = true;
+        for (var member : members) {
+            if (member.length == 0) {
+                continue;
+            }
+            if (!first) {
+                position = copy(SEPARATOR, snapshot, position);
+            }
+            first = false;
+            position = copy(member, snapshot, position);
+        }
+        copy(CLOSE, snapshot, position);
+        return snapshot;
+    }
+
+    private static int copy(byte[] source, byte[] target, int position) {
+        System.arraycopy(source, 0, target, position, source.length);
+        return position + source.length;
+    }
+
+    private static byte[] member(String content) {
+        var bas = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bas)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new EdcException(e);
+        }
+        return bas.toByteArray();
+    }
+
+    /**
+     * A {@link ByteArrayOutputStream} that exposes the size of its internal array.
+     */
+    private static final class OutputBuffer extends ByteArrayOutputStream {
+        private OutputBuffer() {
+            super(BUFFER_SIZE);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.snapshot;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A source of BPN-to-DID mapping entries that are encoded into a snapshot, e.g. {@code Map::forEach}.
+ */
+@FunctionalInterface
+public interface SnapshotEntries {
+
+    /**
+     * Performs the action for every entry, with the BPN as first and the DID as second argument.
+     */
+    void forEach(BiConsumer<String, String> action);
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.snapshot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class SegmentedSnapshotEncoderTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 4, 64 })
+    void assemble_shouldDecompressToJsonObject(int segments) throws IOException {
+        var encoder = new SegmentedSnapshotEncoder(segments);
+        var entries = new HashMap<String, String>();
+        for (var i = 0; i < 100; i++) {
+            entries.put("BPN%012d".formatted(i), "did:web:localhost:member" + i);
+        }
+        entries.put("BPN\"quoted\\", "did:web:localhost:\u00fcmlaut");
+
+        assertThat(decode(encoder.assemble(encode(encoder, entries)))).isEqualTo(entries);
+    }
+
+    @Test
+    void assemble_whenEmpty() throws IOException {
+        var encoder = new SegmentedSnapshotEncoder(4);
+
+        assertThat(decode(encoder.assemble(encode(encoder, Map.of())))).isEmpty();
+    }
+
+    @Test
+    void assemble_whenSegmentReplaced_shouldOnlyChangeThatSegment() throws IOException {
+        var encoder = new SegmentedSnapshotEncoder(4);
+        var entries = new HashMap<String, String>();
+        for (var i = 0; i < 20; i++) {
+            entries.put("BPN" + i, "did:web:" + i);
+        }
+        var members = encode(encoder, entries);
+
+        var segment = encoder.segmentOf("BPN0");
+        var segmentEntries = new HashMap<String, String>();
+        entries.put("BPN0", "did:web:changed");
+        entries.forEach((bpn, did) -> {
+            if (encoder.segmentOf(bpn) == segment) {
+                segmentEntries.put(bpn, did);
+            }
+        });
+        members[segment] = encoder.encodeSegment(segmentEntries::forEach);
+
+        assertThat(decode(encoder.assemble(members))).isEqualTo(entries);
+    }
+
+    @Test
+    void encodeSegment_whenEmpty_shouldReturnEmptyArray() {
+        assertThat(new SegmentedSnapshotEncoder(1).encodeSegment(Map.<String, String>of()::forEach)).isEmpty();
+    }
+
+    @Test
+    void encodeSegment_whenBufferReused_shouldNotContainPreviousContent() throws IOException {
+        var encoder = new SegmentedSnapshotEncoder(1);
+        var large = new HashMap<String, String>();
+        for (var i = 0; i < 50_000; i++) {
+            large.put("BPN%012d".formatted(i), "did:web:localhost:" + i);
+        }
+        var small = Map.of("BPN1", "did:web:1");
+
+        var largeMember = encoder.encodeSegment(large::forEach);
+        var smallMember = encoder.encodeSegment(small::forEach);
+
+        assertThat(decode(encoder.assemble(new byte[][]{ smallMember }))).isEqualTo(small);
+        assertThat(decode(encoder.assemble(new byte[][]{ largeMember }))).isEqualTo(large);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1_000_000 })
+    void encodeSegments_shouldEqualSingleThreadedEncoding(int threshold) throws IOException {
+        var pool = new ForkJoinPool(4);
+        try {
+            var encoder = new SegmentedSnapshotEncoder(16, pool, threshold);
+            var entries = new HashMap<String, String>();
+            for (var i = 0; i < 1000; i++) {
+                entries.put("BPN%012d".formatted(i), "did:web:localhost:member" + i);
+            }
+            var segments = new ArrayList<Map<String, String>>();
+            for (var i = 0; i < encoder.segments(); i++) {
+                segments.add(new HashMap<>());
+            }
+            entries.forEach((bpn, did) -> segments.get(encoder.segmentOf(bpn)).put(bpn, did));
+            var changed = new SnapshotEntries[encoder.segments()];
+            for (var i = 1; i < changed.length; i++) {
+                changed[i] = segments.get(i)::forEach;
+            }
+
+            var members = encoder.encodeSegments(changed, entries.size());
+
+            assertThat(members[0]).isNull();
+            members[0] = encoder.encodeSegment(segments.get(0)::forEach);
+            assertThat(decode(encoder.assemble(members))).isEqualTo(entries);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 3, 100, -2 })
+    void create_whenNotPowerOfTwo_shouldThrow(int segments) {
+        assertThatIllegalArgumentException().isThrownBy(() -> new SegmentedSnapshotEncoder(segments));
+    }
+
+    @Test
+    void decodeSegment_shouldReturnEncodedEntries() {
+        var encoder = new SegmentedSnapshotEncoder(1);
+        var entries = Map.of("BPN1", "did:web:1", "BPN\"quoted\\", "did:web:localhost:\u00fcmlaut");
+
+        var decoded = new HashMap<String, String>();
+        encoder.decodeSegment(encoder.encodeSegment(entries::forEach), decoded::put);
+
+        assertThat(decoded).isEqualTo(entries);
+    }
+
+    @Test
+    void decodeSegment_whenEmpty_shouldReturnNoEntries() {
+        var encoder = new SegmentedSnapshotEncoder(1);
+
+        var decoded = new HashMap<String, String>();
+        encoder.decodeSegment(encoder.encodeSegment(Map.<String, String>of()::forEach), decoded::put);
+
+        assertThat(decoded).isEmpty();
+    }
+
+    @Test
+    void segmentOf_shouldBeInRange() {
+        var encoder = new SegmentedSnapshotEncoder(8);
+        var used = new ArrayList<Integer>();
+        for (var i = 0; i < 1000; i++) {
+            var segment = encoder.segmentOf("BPN" + i);
+            assertThat(segment).isBetween(0, 7);
+            if (!used.contains(segment)) {
+                used.add(segment);
+            }
+        }
+        assertThat(used).hasSize(8);
+    }
+
+    private byte[][] encode(SegmentedSnapshotEncoder encoder, Map<String, String> entries) {
+        var segments = new ArrayList<Map<String, String>>();
+        for (var i = 0; i < encoder.segments(); i++) {
+            segments.add(new HashMap<>());
+        }
+        entries.forEach((bpn, did) -> segments.get(encoder.segmentOf(bpn)).put(bpn, did));
+        var members = new byte[encoder.segments()][];
+        for (var i = 0; i < members.length; i++) {
+            members[i] = encoder.encodeSegment(segments.get(i)::forEach);
+        }
+        return members;
+    }
+
+    private Map<String, String> decode(byte[] snapshot) throws IOException {
+        try (var stream = new GZIPInputStream(new ByteArrayInputStream(snapshot))) {
+            return mapper.readValue(stream.readAllBytes(), new TypeReference<>() {
+            });
+        }
+    }
+}
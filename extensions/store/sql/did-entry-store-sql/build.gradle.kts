@@ -23,11 +23,13 @@ plugins {
 
 dependencies {
     implementation(project(":spi:core-spi"))
+    implementation(project(":core:snapshot-lib"))
     implementation(project(":extensions:store:sql:sql-lib"))
     implementation(libs.edc.spi.core)
     implementation(libs.edc.spi.transaction)
     implementation(libs.edc.spi.transaction.datasource)
     implementation(libs.edc.lib.sql)
+    implementation(libs.postgres)
 
     testImplementation(libs.edc.junit)
     testImplementation(testFixtures(project(":spi:core-spi")))
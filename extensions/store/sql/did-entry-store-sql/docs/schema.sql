@@ -19,10 +19,15 @@
 
 CREATE TABLE IF NOT EXISTS edc_did_entries
 (
-    bpn VARCHAR NOT NULL PRIMARY KEY,
-    did VARCHAR NOT NULL
+    bpn     VARCHAR NOT NULL PRIMARY KEY,
+    did     VARCHAR NOT NULL,
+    version INT     NOT NULL DEFAULT 0
 );
 
+CREATE INDEX IF NOT EXISTS edc_did_entries_did_idx ON edc_did_entries (did);
+
+CREATE INDEX IF NOT EXISTS edc_did_entries_version_idx ON edc_did_entries (version);
+
 CREATE TABLE IF NOT EXISTS edc_did_entry_metadata
 (
     version    INT    NOT NULL DEFAULT 0,
@@ -32,3 +37,38 @@ CREATE TABLE IF NOT EXISTS edc_did_entry_metadata
 INSERT INTO edc_did_entry_metadata (version, updated_at)
 VALUES (0, (EXTRACT(EPOCH FROM NOW())));
 
+CREATE TABLE IF NOT EXISTS edc_did_entry_changes
+(
+    id      BIGSERIAL PRIMARY KEY,
+    version INT     NOT NULL,
+    bpn     VARCHAR NOT NULL,
+    did     VARCHAR
+);
+
+CREATE INDEX IF NOT EXISTS edc_did_entry_changes_version_idx ON edc_did_entry_changes (version);
+
+CREATE TABLE IF NOT EXISTS edc_did_entry_tombstones
+(
+    bpn     VARCHAR NOT NULL PRIMARY KEY,
+    version INT     NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS edc_did_entry_tombstones_version_idx ON edc_did_entry_tombstones (version);
+
+CREATE TABLE IF NOT EXISTS edc_did_entry_snapshot
+(
+    version  INT NOT NULL DEFAULT 0,
+    segments INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO edc_did_entry_snapshot (version, segments)
+VALUES (0, 0);
+
+CREATE TABLE IF NOT EXISTS edc_did_entry_snapshot_segments
+(
+    segment INT   NOT NULL PRIMARY KEY,
+    version INT   NOT NULL,
+    data    BYTEA NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS edc_did_entry_snapshot_segments_version_idx ON edc_did_entry_snapshot_segments (version);
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.sql.store;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rebuilds the cache of {@link SqlDidEntryStore} on a background executor, so that writers don't wait for it.
+ * <p>
+ * Triggers are coalesced: at most one rebuild runs at a time, and all triggers that arrive while it runs are served by a
+ * single further rebuild. A rebuild never runs concurrently with another one, regardless of the number of threads of the
+ * executor.
+ */
+class CacheRebuilder {
+    private final Runnable rebuild;
+    private final Executor executor;
+    private final Monitor monitor;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    CacheRebuilder(Runnable rebuild, Executor executor, Monitor monitor) {
+        this.rebuild = rebuild;
+        this.executor = executor;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Requests a rebuild. The rebuild starts after this method returns, so it observes everything that was committed before.
+     */
+    void trigger() {
+        if (pending.getAndIncrement() == 0) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                pending.set(0);
+                monitor.warning("Cache rebuild rejected, the cache is updated by the next poll", e);
+            }
+        }
+    }
+
+    private void drain() {
+        int served;
+        do {
+            served = pending.get();
+            try {
+                rebuild.run();
+            } catch (Exception e) {
+                monitor.warning("Failed to rebuild the DID entry cache", e);
+            }
+            if (served > 1) {
+                monitor.debug("Coalesced %d cache rebuild requests".formatted(served));
+            }
+        } while (pending.addAndGet(-served) != 0);
+    }
+}
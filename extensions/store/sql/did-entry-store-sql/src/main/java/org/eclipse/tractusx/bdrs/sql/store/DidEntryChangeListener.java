@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.sql.store;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Listens for the notifications that {@link SqlDidEntryStore} sends on every change, and triggers a cache update right
+ * away, so that replicas don't have to wait for the next poll. The payload of a notification is the new version, which is
+ * passed on before the update is triggered, so that the update can tell whether a read data source already caught up.
+ * <p>
+ * The listener holds a dedicated connection, which must not be taken from a pool, because it is never released. If the
+ * connection fails, it is re-established after a delay. After (re-)connecting, the cache is updated once, to catch up on
+ * changes that were made while no connection was listening.
+ */
+public class DidEntryChangeListener {
+    private final ConnectionFactory connectionFactory;
+    private final String channel;
+    private final IntConsumer onVersion;
+    private final Runnable onChange;
+    private final Duration reconnectDelay;
+    private final Monitor monitor;
+    private volatile boolean running;
+    private Future<?> future;
+
+    /**
+     * Creates the listener.
+     *
+     * @param connectionFactory creates the dedicated connection to listen on
+     * @param channel the channel the store notifies on
+     * @param onVersion receives the newest version of the notifications received at once, before {@code onChange} is invoked
+     * @param onChange invoked when a change was notified
+     * @param reconnectDelay the time to wait before re-establishing a failed connection
+     * @param monitor the monitor connection failures are reported to
+     */
+    public DidEntryChangeListener(ConnectionFactory connectionFactory, String channel, IntConsumer onVersion, Runnable onChange,
+                                  Duration reconnectDelay, Monitor monitor) {
+        this.connectionFactory = connectionFactory;
+        this.channel = channel;
+        this.onVersion = onVersion;
+        this.onChange = onChange;
+        this.reconnectDelay = reconnectDelay;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Starts listening on a thread of the executor, which is occupied until the listener is stopped.
+     */
+    public void start(ExecutorService executor) {
+        running = true;
+        future = executor.submit(this::listen);
+    }
+
+    public void stop() {
+        running = false;
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (var connection = connectionFactory.create()) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                monitor.debug("Listening for changes on channel " + channel);
+                onChange.run();
+                var notifications = connection.unwrap(PGConnection.class);
+                while (running) {
+                    // blocks until notifications arrive or the timeout elapses, so that a stopped listener terminates
+                    var received = notifications.getNotifications((int) reconnectDelay.toMillis());
+                    if (received != null && received.length > 0) {
+                        newestVersion(received).ifPresent(onVersion);
+                        onChange.run();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                monitor.warning("Listening for changes on channel %s failed, reconnecting in %d ms".formatted(channel, reconnectDelay.toMillis()), e);
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the newest version in the payloads of the notifications. Notifications without a version, e.g. sent by
+     * earlier releases, are skipped.
+     */
+    private OptionalInt newestVersion(PGNotification[] notifications) {
+        var newest = OptionalInt.empty();
+        for (var notification : notifications) {
+            try {
+                var version = Integer.parseInt(notification.getParameter());
+                if (newest.isEmpty() || version > newest.getAsInt()) {
+                    newest = OptionalInt.of(version);
+                }
+            } catch (NumberFormatException e) {
+                monitor.debug("Ignoring notification without version on channel " + channel);
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Creates the dedicated connection of the listener.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+}
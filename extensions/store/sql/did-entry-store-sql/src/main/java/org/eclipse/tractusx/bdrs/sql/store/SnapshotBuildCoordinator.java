@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.sql.store;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.sql.QueryExecutor;
+import org.eclipse.tractusx.bdrs.sql.store.schema.DidEntryStoreStatements;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Elects the replica that builds a snapshot version which is not shared yet, if the replicas of {@link SqlDidEntryStore}
+ * share their snapshots.
+ * <p>
+ * The builder is the replica that holds a transaction-level advisory lock. It keeps the lock until its transaction, in
+ * which it also shares the snapshot, ends. Meanwhile, the other replicas poll for the shared snapshot instead of building
+ * it themselves. If the builder fails, or its database session ends, the lock is released and one of the waiting replicas
+ * takes over. Replicas that waited for longer than the maximum wait build the snapshot themselves.
+ */
+public class SnapshotBuildCoordinator {
+    public static final long DEFAULT_LOCK_KEY = 0x6264727373686172L;
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final QueryExecutor queryExecutor;
+    private final DidEntryStoreStatements statements;
+    private final long lockKey;
+    private final Duration maxWait;
+    private final Duration pollInterval;
+    private final Monitor monitor;
+
+    /**
+     * Creates the coordinator.
+     *
+     * @param lockKey the key of the advisory lock, which must be the same for all replicas of a directory
+     * @param maxWait the maximum time to wait for another replica to share the snapshot
+     * @param pollInterval the time between two checks whether the snapshot was shared
+     */
+    public SnapshotBuildCoordinator(QueryExecutor queryExecutor, DidEntryStoreStatements statements, long lockKey, Duration maxWait,
+                                    Duration pollInterval, Monitor monitor) {
+        this.queryExecutor = queryExecutor;
+        this.statements = statements;
+        this.lockKey = lockKey;
+        this.maxWait = maxWait;
+        this.pollInterval = pollInterval;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Returns once the caller either became the builder, or could reuse the snapshot of another replica. Must be called
+     * inside a transaction, because the lock is released when the transaction of the connection ends.
+     *
+     * @param connection a connection to the primary database, which takes part in the transaction that builds the snapshot
+     * @param reuse attempts to load the snapshot shared by another replica, and returns whether that succeeded
+     * @return true if the caller has to build the snapshot, false if it was reused
+     */
+    public boolean leadOrAwait(Connection connection, BooleanSupplier reuse) {
+        var deadline = System.nanoTime() + maxWait.toNanos();
+        while (true) {
+            if (tryLock(connection)) {
+                return true;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                monitor.warning("No snapshot was shared within %d ms, building it without being elected".formatted(maxWait.toMillis()));
+                return true;
+            }
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return true;
+            }
+            if (reuse.getAsBoolean()) {
+                return false;
+            }
+        }
+    }
+
+    private boolean tryLock(Connection connection) {
+        return Boolean.TRUE.equals(queryExecutor.single(connection, false, r -> r.getBoolean(1), statements.getTryAdvisoryLockTemplate(), lockKey));
+    }
+}
@@ -20,149 +20,453 @@
 package org.eclipse.tractusx.bdrs.sql.store;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.eclipse.edc.spi.EdcException;
 import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.persistence.EdcPersistenceException;
 import org.eclipse.edc.sql.QueryExecutor;
 import org.eclipse.edc.sql.store.AbstractSqlStore;
 import org.eclipse.edc.transaction.datasource.spi.DataSourceRegistry;
 import org.eclipse.edc.transaction.spi.TransactionContext;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
+import org.eclipse.tractusx.bdrs.snapshot.SnapshotEntries;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntryChanges;
+import org.eclipse.tractusx.bdrs.spi.store.DidEntrySnapshot;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 import org.eclipse.tractusx.bdrs.sql.store.schema.DidEntryStoreStatements;
 import org.jetbrains.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
-import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class SqlDidEntryStore extends AbstractSqlStore implements DidEntryStore {
-    private final ObjectMapper mapper;
+    public static final int DEFAULT_CHANGE_LOG_SIZE = 10_000;
+    public static final int DEFAULT_FETCH_SIZE = 10_000;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // three parameters per entry, at most 65.535 parameters per statement
+    private static final int INSERT_CHUNK_SIZE = 20_000;
     private final DidEntryStoreStatements statements;
-    private final AtomicReference<byte[]> cache = new AtomicReference<>();
+    private final AtomicReference<Cache> cache = new AtomicReference<>();
     private final Monitor monitor;
-    private int latestVersion = 0;
+    private final int changeLogSize;
+    private final SegmentedSnapshotEncoder encoder;
+    private final @Nullable CacheRebuilder rebuilder;
+    private final int fetchSize;
+    private final DataSourceRegistry dataSourceRegistry;
+    private final @Nullable String readDataSourceName;
+    private final @Nullable SnapshotBuildCoordinator coordinator;
+    private final int maxBatchSize;
+    private final Duration linger;
+    private final Queue<Write> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    // the newest version this store wrote or observed, updated by writers, polls, notifications and rebuilds concurrently
+    private final AtomicInteger latestVersion = new AtomicInteger();
 
     public SqlDidEntryStore(DataSourceRegistry dataSourceRegistry,
                             String dataSourceName,
                             TransactionContext transactionContext,
                             ObjectMapper objectMapper,
                             QueryExecutor queryExecutor, DidEntryStoreStatements statements, Monitor monitor) {
+        this(dataSourceRegistry, dataSourceName, transactionContext, objectMapper, queryExecutor, statements, monitor, DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS));
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param changeLogSize the number of versions for which changes are retained in the database to serve deltas, see {@link #changes(long)}
+     * @param encoder the encoder of the snapshot segments. Only segments that changed since the previous snapshot are compressed again.
+     * @see #SqlDidEntryStore(DataSourceRegistry, String, TransactionContext, ObjectMapper, QueryExecutor, DidEntryStoreStatements, Monitor, int, SegmentedSnapshotEncoder, Executor, int, String, SnapshotBuildCoordinator, int, Duration)
+     */
+    public SqlDidEntryStore(DataSourceRegistry dataSourceRegistry,
+                            String dataSourceName,
+                            TransactionContext transactionContext,
+                            ObjectMapper objectMapper,
+                            QueryExecutor queryExecutor, DidEntryStoreStatements statements, Monitor monitor, int changeLogSize,
+                            SegmentedSnapshotEncoder encoder) {
+        this(dataSourceRegistry, dataSourceName, transactionContext, objectMapper, queryExecutor, statements, monitor, changeLogSize, encoder, null, DEFAULT_FETCH_SIZE, null, null,
+                1, Duration.ZERO);
+    }
+
+    /**
+     * Creates the store.
+     *
+     * @param changeLogSize the number of versions for which changes are retained in the database to serve deltas, see {@link #changes(long)}
+     * @param encoder the encoder of the snapshot segments. Only segments that changed since the previous snapshot are compressed again.
+     * @param rebuildExecutor the executor the cache is rebuilt on after writes and cache updates, or {@code null} to rebuild it
+     *                        synchronously. If set, writes return before the cache reflects them.
+     * @param fetchSize the number of rows fetched per round trip when all entries are loaded, or 0 to fetch all rows at once
+     * @param readDataSourceName the data source version polls, cache loads and deltas are read from, e.g. a read replica of the
+     *                           database, or {@code null} to read from the data source that is written to
+     * @param coordinator elects the replica that builds a snapshot version, or {@code null} if snapshots are not shared. If set,
+     *                    the compressed snapshot segments are shared with other replicas through the database, and a replica
+     *                    whose cache is behind loads and decodes the segments another replica shared, instead of loading the
+     *                    entries and compressing them itself. All replicas must use the same number of segments.
+     * @param maxBatchSize the maximum number of concurrent single-entry writes that are applied together, in one transaction and
+     *                     at one version. 1 applies every write in a transaction of its own.
+     * @param linger the time the writer waits for further writes before it applies a batch, or {@link Duration#ZERO}
+     */
+    public SqlDidEntryStore(DataSourceRegistry dataSourceRegistry,
+                            String dataSourceName,
+                            TransactionContext transactionContext,
+                            ObjectMapper objectMapper,
+                            QueryExecutor queryExecutor, DidEntryStoreStatements statements, Monitor monitor, int changeLogSize,
+                            SegmentedSnapshotEncoder encoder, @Nullable Executor rebuildExecutor, int fetchSize,
+                            @Nullable String readDataSourceName, @Nullable SnapshotBuildCoordinator coordinator, int maxBatchSize,
+                            Duration linger) {
         super(dataSourceRegistry, dataSourceName, transactionContext, objectMapper, queryExecutor);
-        this.mapper = objectMapper;
         this.statements = statements;
 
         // cannot invalidate the cache here, because the data source may not yet be initialized
         this.monitor = monitor;
+        this.changeLogSize = changeLogSize;
+        this.encoder = encoder;
+        this.rebuilder = rebuildExecutor != null ? new CacheRebuilder(this::rebuildCache, rebuildExecutor, monitor) : null;
+        this.fetchSize = fetchSize;
+        this.dataSourceRegistry = dataSourceRegistry;
+        this.readDataSourceName = readDataSourceName;
+        this.coordinator = coordinator;
+        this.maxBatchSize = maxBatchSize;
+        this.linger = linger;
     }
 
     @Override
-    public byte[] entries() {
-        if (cache.get() == null) {
-            invalidateCache();
-        }
-        return cache.get();
+    public DidEntrySnapshot snapshot() {
+        return cache().snapshot();
     }
 
+    /**
+     * Answers the lookup from the locally cached index, which is refreshed together with the snapshot.
+     */
     @Override
-    public void save(DidEntry entry) {
-        transactionContext.execute(() -> {
-            try (var connection = getConnection()) {
-                upsert(connection, entry);
-                invalidateCache();
+    public DidEntry find(String bpn) {
+        var did = lookup(cache(), bpn);
+        return did != null ? new DidEntry(bpn, did) : null;
+    }
+
+    @Override
+    public Stream<DidEntry> find(Collection<String> bpns) {
+        var cache = cache();
+        return bpns.stream()
+                .map(bpn -> {
+                    var did = lookup(cache, bpn);
+                    return did != null ? new DidEntry(bpn, did) : null;
+                })
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<DidEntry> findByDid(String did) {
+        var reverseIndex = cache().reverseIndex();
+        return reverseIndex.get(encoder.segmentOf(did)).getOrDefault(did, List.of()).stream()
+                .map(bpn -> new DidEntry(bpn, did))
+                .toList();
+    }
+
+    /**
+     * Reads the changes after the given version from the changes table. Deltas can only be served if there is at least one
+     * change for every version in between, which is not the case for bulk inserts, or if the changes were already pruned.
+     */
+    @Override
+    public Optional<DidEntryChanges> changes(long since) {
+        return transactionContext.execute(() -> {
+            try (var connection = getReadConnection()) {
+                var version = getLatestVersion(connection);
+                if (since > version || version - since > changeLogSize) {
+                    return Optional.empty();
+                }
+                var upserts = new LinkedHashMap<String, String>();
+                var deletions = new LinkedHashSet<String>();
+                var versions = new HashSet<Integer>();
+                try (var changes = queryExecutor.query(connection, false, this::mapChange, statements.getChangesSinceTemplate(), since, version)) {
+                    changes.forEach(change -> {
+                        versions.add(change.version());
+                        if (change.did() != null) {
+                            deletions.remove(change.bpn());
+                            upserts.put(change.bpn(), change.did());
+                        } else {
+                            upserts.remove(change.bpn());
+                            deletions.add(change.bpn());
+                        }
+                    });
+                }
+                if (versions.size() != version - since) {
+                    return Optional.empty();
+                }
+                return Optional.of(new DidEntryChanges(version, upserts, deletions));
             } catch (SQLException e) {
                 throw new EdcPersistenceException(e);
             }
         });
     }
 
+    @Override
+    public void save(DidEntry entry) {
+        write(entry.bpn(), entry.did());
+    }
+
     @Override
     public void save(Stream<DidEntry> entries) {
         transactionContext.execute(() -> {
             try (var connection = getConnection()) {
 
-                //do a batch insert. only 65.535 params are supported in one batch, so we segment
-                var chunkSize = 32_000;
-
-                var entryList = chunked(entries.toList(), chunkSize);
-
-                entryList.forEach(chunk -> {
-                    var stmt = statements.getInsertMultipleStatement(chunk);
-
-                    var params = chunk.stream().map(e -> List.of(e.bpn(), e.did()))
-                            .flatMap(List::stream)
-                            .toArray();
-
-                    queryExecutor.execute(connection, stmt, params);
-                });
+                var version = updateLatestVersion(connection);
+                if (connection.isWrapperFor(PGConnection.class)) {
+                    copy(connection.unwrap(PGConnection.class), entries, version);
+                } else {
+                    insertChunked(connection, entries, version);
+                }
+                queryExecutor.execute(connection, statements.getDeleteTombstonesOfVersionTemplate(), version);
 
-                updateLatestVersion(connection);
-                invalidateCache();
+                // bulk inserts are not recorded in the changes table, deltas across them are served as full snapshot
+                queryExecutor.execute(connection, statements.getDeleteChangesTemplate(), version);
+                if (rebuilder == null) {
+                    refreshWritten(version);
+                }
             } catch (SQLException e) {
                 throw new EdcPersistenceException(e);
             }
         });
+        triggerRebuild();
     }
 
     @Override
     public void update(DidEntry entry) {
+        write(entry.bpn(), entry.did());
+    }
+
+    @Override
+    public void delete(String bpn) {
+        write(bpn, null);
+    }
+
+    /**
+     * Writes the entry, or deletes the BPN if the DID is {@code null}. If writes are grouped, the write is queued, and all
+     * queued writes are applied together unless another caller is already doing so. The caller waits until its write was
+     * committed, or fails with the error of its write.
+     */
+    private void write(String bpn, @Nullable String did) {
+        if (maxBatchSize <= 1) {
+            applyOne(bpn, did);
+            return;
+        }
+        var write = new Write(bpn, did, new CompletableFuture<>());
+        writes.add(write);
+        drain();
+        try {
+            write.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new EdcPersistenceException(e.getCause());
+        }
+    }
+
+    /**
+     * Applies the queued writes in batches as long as there are any and no other caller does. A caller that finds the queue
+     * attended can leave, because the attending caller checks the queue again after releasing it.
+     */
+    private void drain() {
+        while (!writes.isEmpty() && writing.compareAndSet(false, true)) {
+            var batch = new ArrayList<Write>();
+            try {
+                linger();
+                for (var write = writes.poll(); write != null; write = batch.size() < maxBatchSize ? writes.poll() : null) {
+                    batch.add(write);
+                }
+                applyBatch(batch);
+            } catch (RuntimeException | Error e) {
+                // the other callers are waiting for their writes, they must not be left hanging
+                batch.forEach(write -> write.done().completeExceptionally(e));
+            } finally {
+                writing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Waits for the linger period, so that more writes can join the batch.
+     */
+    private void linger() {
+        if (linger.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(linger.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies the writes in one transaction. If that fails, e.g. because one of the writes violates a constraint, they are
+     * applied one by one, so that only the callers of failing writes receive an error.
+     */
+    private void applyBatch(List<Write> batch) {
+        if (batch.size() > 1) {
+            try {
+                applyTogether(batch);
+                batch.forEach(write -> write.done().complete(null));
+                return;
+            } catch (RuntimeException e) {
+                monitor.debug("Failed to apply %d writes together, will apply them one by one: %s".formatted(batch.size(), e.getMessage()));
+            }
+        }
+        for (var write : batch) {
+            try {
+                applyOne(write.bpn(), write.did());
+                write.done().complete(null);
+            } catch (RuntimeException e) {
+                write.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Applies a single write in a transaction of its own, with a single statement.
+     */
+    private void applyOne(String bpn, @Nullable String did) {
         transactionContext.execute(() -> {
             try (var connection = getConnection()) {
-                upsert(connection, entry);
-                invalidateCache();
+                if (did != null) {
+                    var entry = new DidEntry(bpn, did);
+                    var version = upsert(connection, entry);
+                    if (rebuilder == null) {
+                        refreshCache(version, List.of(entry), List.of());
+                    }
+                } else {
+                    var stmt = statements.getDeleteAndRecordTemplate();
+                    var version = queryExecutor.single(connection, false, r -> r.getInt(statements.getVersionColumn()), stmt,
+                            bpn, Instant.now().toEpochMilli(), bpn, bpn, changeLogSize, changeLogSize);
+                    if (version != null) {
+                        observeVersion(version);
+                        if (rebuilder == null) {
+                            refreshCache(version, List.of(), List.of(bpn));
+                        }
+                    }
+                }
             } catch (SQLException e) {
                 throw new EdcPersistenceException(e);
             }
         });
+        triggerRebuild();
     }
 
-    @Override
-    public void delete(String bpn) {
+    /**
+     * Applies multiple writes in one transaction, at one version. If a BPN is written multiple times, its last write wins.
+     * The version is locked first and the writes are applied at the next version, which is only taken if the batch changed
+     * anything, so that deletions of unknown BPNs do not increment the version, as with single writes.
+     */
+    private void applyTogether(List<Write> batch) {
+        var changes = new LinkedHashMap<String, String>();
+        batch.forEach(write -> changes.put(write.bpn(), write.did()));
         transactionContext.execute(() -> {
             try (var connection = getConnection()) {
-                if (findByBpn(connection, bpn) != null) {
-                    var stmt = statements.getDeleteByBpnTemplate();
-                    queryExecutor.execute(connection, stmt, bpn);
-                    updateLatestVersion(connection);
-                    invalidateCache();
+                var version = lockLatestVersion(connection) + 1;
+                var written = new ArrayList<DidEntry>();
+                var deleted = new ArrayList<String>();
+                changes.forEach((bpn, did) -> {
+                    if (did != null) {
+                        queryExecutor.execute(connection, statements.getUpsertAtVersionTemplate(), bpn, did, version, bpn, version, bpn, did);
+                        written.add(new DidEntry(bpn, did));
+                    } else if (queryExecutor.execute(connection, statements.getDeleteAtVersionTemplate(), bpn, version, version) > 0) {
+                        deleted.add(bpn);
+                    }
+                });
+                if (written.isEmpty() && deleted.isEmpty()) {
+                    return;
+                }
+                updateLatestVersion(connection);
+                queryExecutor.execute(connection, statements.getDeleteChangesTemplate(), version - changeLogSize);
+                queryExecutor.execute(connection, statements.getDeleteTombstonesTemplate(), version - changeLogSize);
+                if (rebuilder == null) {
+                    refreshCache(version, written, deleted);
                 }
             } catch (SQLException e) {
                 throw new EdcPersistenceException(e);
             }
         });
+        triggerRebuild();
     }
 
     /**
      * This method performs a cache update by first checking if the database has new data available, and if it does, reloads the
      * internal cache with values from the database.
-     * As a means of change detection, the {@code version} field is used.
+     * As a means of change detection, the {@code version} field is used. If the read data source is behind the latest version
+     * this store wrote or observed, see {@link #observeVersion(int)}, the data source that is written to is read instead.
+     * If the cache is rebuilt in the background, this only triggers a rebuild, which is coalesced with pending ones.
      * <p>
      * This method is transactional.
      */
     public void updateCache() {
+        if (rebuilder != null) {
+            rebuilder.trigger();
+            return;
+        }
         monitor.debug("Checking if cache is out-of-date");
-        transactionContext.execute(() -> {
-            try (var connection = getConnection()) {
-                var dbVersion = getLatestVersion(connection);
-                if (dbVersion > latestVersion) {
-                    monitor.debug("Local version is %s, database version is %d, will update cache".formatted(latestVersion, dbVersion));
-                    invalidateCache();
-                    latestVersion = dbVersion;
-                }
-            } catch (SQLException e) {
-                throw new EdcPersistenceException(e);
-            }
-        });
+        transactionContext.execute(this::refreshFromReadDataSource);
+    }
+
+    /**
+     * Triggers a background rebuild of the cache, if enabled. Called once the transaction of a write returned, so the rebuild
+     * observes the write, unless the write was part of an enclosing transaction. In that case, the write is picked up by the
+     * next cache update.
+     */
+    private void triggerRebuild() {
+        if (rebuilder != null) {
+            rebuilder.trigger();
+        }
+    }
+
+    /**
+     * Refreshes the cache in a transaction of its own, on the thread of the rebuilder.
+     */
+    private void rebuildCache() {
+        transactionContext.execute(this::refreshFromReadDataSource);
+    }
+
+    /**
+     * Locks the version row until the end of the transaction and returns the version, or the locally held
+     * {@code latestVersion} if no such row exists.
+     */
+    private int lockLatestVersion(Connection connection) {
+        var version = queryExecutor.single(connection, false, r -> r.getInt(statements.getVersionColumn()), statements.getLockLatestVersionStatement());
+        return version != null ? version : latestVersion.get();
     }
 
     /**
@@ -171,51 +475,100 @@ public class SqlDidEntryStore extends AbstractSqlStore implements DidEntryStore
     private int getLatestVersion(Connection connection) {
         var stmt = statements.getLatestVersionStatement();
         var list = queryExecutor.query(connection, true, r -> r.getInt(statements.getVersionColumn()), stmt);
-        return list.findFirst().orElse(latestVersion);
+        return list.findFirst().orElse(latestVersion.get());
     }
 
     /**
-     * Partitions the list in to smaller sub-lists, each containing {@code chunkSize} elements
-     * Algorithm borrowed from <a href="https://davidvlijmincx.com/posts/split_a_list_in_java/">here</a>
+     * Streams the entries into the table with the COPY protocol, without materializing them or building statements.
+     * This method is NOT transactional, and may only be called inside a transaction!
      */
-    private List<List<DidEntry>> chunked(List<DidEntry> list, int chunkSize) {
-        var counter = new AtomicInteger();
-        var mapOfChunks = list.stream()
-                .collect(Collectors.groupingBy(it -> counter.getAndIncrement() / chunkSize));
-        // Create a list containing the lists of chunks
-        return new ArrayList<>(mapOfChunks.values());
-
+    private void copy(PGConnection connection, Stream<DidEntry> entries, int version) throws SQLException {
+        var suffix = "\t" + version + "\n";
+        try (var writer = new BufferedWriter(new OutputStreamWriter(new PGCopyOutputStream(connection, statements.getCopyStatement(), COPY_BUFFER_SIZE), UTF_8), COPY_BUFFER_SIZE)) {
+            entries.forEach(entry -> {
+                try {
+                    writer.write(escapeCopyText(entry.bpn()));
+                    writer.write('\t');
+                    writer.write(escapeCopyText(entry.did()));
+                    writer.write(suffix);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            throw new EdcPersistenceException("Failed to copy DID entries", e);
+        }
     }
 
     /**
-     * inserts or updates the {@link DidEntry}
+     * Inserts the entries with multi-row inserts, if the COPY protocol is not available. Only 65.535 parameters are
+     * supported in one statement, so the entries are inserted in chunks.
      * This method is NOT transactional, and may only be called inside a transaction!
      */
-    private void upsert(Connection connection, DidEntry entry) {
-        if (findByBpn(connection, entry.bpn()) != null) {
-            update(connection, entry);
-        } else {
-            insert(connection, entry);
+    private void insertChunked(Connection connection, Stream<DidEntry> entries, int version) {
+        var chunk = new ArrayList<DidEntry>(INSERT_CHUNK_SIZE);
+        var iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == INSERT_CHUNK_SIZE || !iterator.hasNext()) {
+                var params = chunk.stream()
+                        .flatMap(e -> Stream.of(e.bpn(), e.did(), version))
+                        .toArray();
+                queryExecutor.execute(connection, statements.getInsertMultipleStatement(chunk), params);
+                chunk.clear();
+            }
         }
-        updateLatestVersion(connection);
     }
 
     /**
-     * Obtains the latest version from the database, increments it by 1 and writes it back to the database
+     * Escapes the characters that have a meaning in the text format of COPY.
      */
-    private void updateLatestVersion(Connection connection) {
-        latestVersion = getLatestVersion(connection) + 1;
-        var stmt = statements.updateLatestVersionTemplate();
-        queryExecutor.execute(connection, stmt, latestVersion, Instant.now().toEpochMilli());
+    private static String escapeCopyText(String value) {
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '\\' || c == '\t' || c == '\n' || c == '\r') {
+                return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+            }
+        }
+        return value;
     }
 
     /**
-     * returns the {@link DidEntry} for the given BPN or null.
+     * inserts or updates the {@link DidEntry} and records the change in one statement. The version is incremented in the
+     * database rather than read and written back, so that concurrent writers of several replicas never claim the same version.
      * This method is NOT transactional, and may only be called inside a transaction!
+     *
+     * @return the new version
+     */
+    private int upsert(Connection connection, DidEntry entry) {
+        var stmt = statements.getUpsertTemplate();
+        int version = queryExecutor.single(connection, false, r -> r.getInt(statements.getVersionColumn()), stmt,
+                Instant.now().toEpochMilli(), entry.bpn(), entry.did(), entry.bpn(), entry.bpn(), entry.did(), changeLogSize, changeLogSize);
+        observeVersion(version);
+        return version;
+    }
+
+    /**
+     * Increments the version in the database. Listeners are notified of the new version once the transaction commits,
+     * see {@link DidEntryChangeListener}.
+     *
+     * @return the new version
+     */
+    private int updateLatestVersion(Connection connection) {
+        var stmt = statements.getIncrementVersionTemplate();
+        int version = queryExecutor.single(connection, false, r -> r.getInt(statements.getVersionColumn()), stmt, Instant.now().toEpochMilli());
+        queryExecutor.single(connection, false, r -> r.getString(1), statements.getNotifyTemplate(), String.valueOf(version));
+        observeVersion(version);
+        return version;
+    }
+
+    /**
+     * Records a version this store wrote or observed, e.g. the version of a change notification. The latest version never
+     * goes back, even if an older version is recorded after a newer one by another thread. A cache update that finds the
+     * read data source behind this version reads from the data source that is written to instead.
      */
-    private @Nullable DidEntry findByBpn(Connection connection, String bpn) {
-        var stmt = statements.findByBpnTemplate();
-        return queryExecutor.single(connection, false, this::mapDidEntry, stmt, bpn);
+    void observeVersion(int version) {
+        latestVersion.accumulateAndGet(version, Math::max);
     }
 
     private DidEntry mapDidEntry(ResultSet resultSet) throws SQLException {
@@ -224,43 +577,480 @@ public class SqlDidEntryStore extends AbstractSqlStore implements DidEntryStore
         return new DidEntry(bpn, did);
     }
 
+    private SharedSegment mapSharedSegment(ResultSet resultSet) throws SQLException {
+        return new SharedSegment(resultSet.getInt(1), resultSet.getInt(2), resultSet.getObject(3, Integer.class), resultSet.getBytes(4));
+    }
+
+    private Change mapChange(ResultSet resultSet) throws SQLException {
+        var version = resultSet.getInt(statements.getVersionColumn());
+        var bpn = resultSet.getString(statements.getBpnColumn());
+        var did = resultSet.getString(statements.getDidColumn());
+        return new Change(version, bpn, did);
+    }
+
     /**
-     * inserts the {@link DidEntry}
+     * Refreshes the local cache, both the lookup indexes and the serialized snapshot. If the cache is only a few versions
+     * behind the database, within the retained number of versions, only the entries written and the BPNs deleted since
+     * its version are fetched and patched into it. Otherwise, all entries are loaded.
+     * The version is read before the entries, so that a snapshot never claims a newer version than the data it contains.
      * This method is NOT transactional, and may only be called inside a transaction!
      */
-    private void insert(Connection connection, DidEntry entry) {
-        var stmt = statements.getInsertTemplate();
-        queryExecutor.execute(connection, stmt, entry.bpn(), entry.did());
+    private void invalidateCache() {
+        try (var connection = getConnection()) {
+            refresh(connection, getLatestVersion(connection), true);
+        } catch (SQLException e) {
+            throw new EdcPersistenceException(e);
+        }
     }
 
     /**
-     * updates the {@link DidEntry}
+     * Brings the cache to the version this store is writing, within the transaction of the write. Other replicas cannot
+     * share that version before the transaction commits, so the writer builds it without an election, and shares it itself.
      * This method is NOT transactional, and may only be called inside a transaction!
      */
-    private void update(Connection connection, DidEntry entry) {
-        var stmt = statements.getUpdateTemplate();
-        queryExecutor.execute(connection, stmt, entry.bpn(), entry.did(), entry.bpn());
+    private void refreshWritten(int version) {
+        try (var connection = getConnection()) {
+            refresh(connection, version, false);
+        } catch (SQLException e) {
+            throw new EdcPersistenceException(e);
+        }
     }
 
     /**
-     * loads ALL entries from the database and puts them in a local cache.
+     * Refreshes the local cache from the read data source, if one is configured. The read data source may lag behind the
+     * data source that is written to. If its version is older than the version this store wrote or observed last, the
+     * cache is refreshed from the written data source instead, and the cache never goes back to an older version.
      * This method is NOT transactional, and may only be called inside a transaction!
      */
-    private void invalidateCache() {
-        try (var connection = getConnection()) {
+    private void refreshFromReadDataSource() {
+        if (readDataSourceName == null) {
+            invalidateCache();
+            return;
+        }
+        try (var connection = getReadConnection()) {
+            var version = getLatestVersion(connection);
+            if (version < latestVersion.get()) {
+                monitor.debug("Read data source is at version %d, behind version %d, will update cache from the primary data source".formatted(version, latestVersion.get()));
+                invalidateCache();
+            } else {
+                refresh(connection, version, true);
+            }
+        } catch (SQLException e) {
+            throw new EdcPersistenceException(e);
+        }
+    }
+
+    /**
+     * Brings the cache to the given version, which must have been read from the connection. A cache that is already at the
+     * version or newer is left as it is, because a read data source may lag behind.
+     *
+     * @param elect whether to load the version from the shared snapshot or elect the replica that builds it, if snapshots are
+     *              shared. Must be false for a version written by the current transaction, which only this replica can build.
+     */
+    private void refresh(Connection connection, int version, boolean elect) {
+        observeVersion(version);
+        var previous = cache.get();
+        if (previous != null && version <= previous.snapshot().version()) {
+            return;
+        }
+        monitor.debug("Cache is at version %s, database version is %d, will update cache".formatted(previous != null ? previous.snapshot().version() : "none", version));
+        if (elect && coordinator != null && (loadSharedSnapshot(connection, previous, version) || !lead(connection, previous, version))) {
+            return;
+        }
+        if (previous != null && version - previous.snapshot().version() <= changeLogSize) {
+            applyChanges(connection, previous, version);
+        } else {
+            reload(connection, previous, version);
+        }
+    }
 
-            var result = queryExecutor.query(connection, true, this::mapDidEntry, "SELECT * FROM %s".formatted(statements.getDidEntryTableName()))
-                    .collect(Collectors.toMap(DidEntry::bpn, DidEntry::did));
-            var bas = new ByteArrayOutputStream();
-            try (var gzip = new GZIPOutputStream(bas)) {
-                gzip.write(mapper.writeValueAsBytes(result));
-            } catch (IOException e) {
-                throw new EdcException(e);
+    /**
+     * Returns a connection to the read data source, or to the data source that is written to, if none is configured.
+     */
+    private Connection getReadConnection() throws SQLException {
+        if (readDataSourceName == null) {
+            return getConnection();
+        }
+        var dataSource = dataSourceRegistry.resolve(readDataSourceName);
+        if (dataSource == null) {
+            throw new EdcPersistenceException("DataSource %s could not be resolved".formatted(readDataSourceName));
+        }
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Loads ALL entries from the database. The entries are partitioned into the segments of the snapshot, and only segments
+     * whose entries differ from the previous cache are compressed again.
+     */
+    private void reload(Connection connection, @Nullable Cache previous, int version) {
+        var segments = new ArrayList<Map<String, String>>(encoder.segments());
+        for (var i = 0; i < encoder.segments(); i++) {
+            segments.add(new HashMap<>());
+        }
+        var reverseIndex = new ReverseIndexUpdate(null);
+        streamEntries(connection, (bpn, did) -> {
+            segments.get(encoder.segmentOf(bpn)).put(bpn, did);
+            reverseIndex.add(did, bpn);
+        });
+        var changed = new boolean[segments.size()];
+        for (var i = 0; i < changed.length; i++) {
+            changed[i] = previous == null || !previous.segments().get(i).equals(segments.get(i));
+        }
+        publish(version, segments, changed, reverseIndex.partitions(), previous);
+    }
+
+    /**
+     * Fetches the entries written and the BPNs deleted after the version of the previous cache, and patches them into a copy of it.
+     */
+    private void applyChanges(Connection connection, Cache previous, int version) {
+        var since = previous.snapshot().version();
+        List<DidEntry> written;
+        try (var entries = queryExecutor.query(connection, true, this::mapDidEntry, statements.getEntriesSinceTemplate(), since)) {
+            written = entries.toList();
+        }
+        List<String> deleted;
+        try (var bpns = queryExecutor.query(connection, true, r -> r.getString(statements.getBpnColumn()), statements.getTombstonesSinceTemplate(), since)) {
+            deleted = bpns.toList();
+        }
+        if (written.isEmpty() && deleted.isEmpty() && version == since) {
+            return;
+        }
+        patch(previous, version, written, deleted);
+    }
+
+    /**
+     * Applies a write of this store to the cache. If the cache was at the version just before the write, the write is
+     * patched in without querying the database, otherwise the changes of the other writers are fetched as well.
+     */
+    private void refreshCache(int version, List<DidEntry> written, List<String> deleted) {
+        var previous = cache.get();
+        if (previous != null && previous.snapshot().version() == version - 1) {
+            patch(previous, version, written, deleted);
+        } else {
+            refreshWritten(version);
+        }
+    }
+
+    /**
+     * Reads all entries through a forward-only cursor, which fetches {@code fetchSize} rows per round trip, so that the rows
+     * are never held by the driver all at once. The driver only uses a cursor outside of auto-commit mode, so auto-commit is
+     * disabled for the duration of the query, if the connection is not part of a transaction already.
+     */
+    private void streamEntries(Connection connection, BiConsumer<String, String> consumer) {
+        try {
+            var autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (var stmt = connection.prepareStatement(statements.getLoadEntriesStatement(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(fetchSize);
+                try (var resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(resultSet.getString(1), resultSet.getString(2));
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
             }
-            cache.set(bas.toByteArray());
+        } catch (SQLException e) {
+            throw new EdcPersistenceException(e);
+        }
+    }
+
+    /**
+     * Patches written entries and deleted BPNs into a copy of the previous cache. Only the affected segments are copied and
+     * compressed again, and only the affected partitions of the reverse index are copied.
+     */
+    private void patch(Cache previous, int version, List<DidEntry> written, List<String> deleted) {
+        var segments = new ArrayList<>(previous.segments());
+        var changed = new boolean[segments.size()];
+        var reverseIndex = new ReverseIndexUpdate(previous.reverseIndex());
+        // a BPN is either written or deleted, so the order in which they are applied does not matter
+        for (var bpn : deleted) {
+            var did = segment(segments, changed, bpn).remove(bpn);
+            if (did != null) {
+                reverseIndex.remove(did, bpn);
+            }
+        }
+        for (var entry : written) {
+            var previousDid = segment(segments, changed, entry.bpn()).put(entry.bpn(), entry.did());
+            if (!entry.did().equals(previousDid)) {
+                if (previousDid != null) {
+                    reverseIndex.remove(previousDid, entry.bpn());
+                }
+                reverseIndex.add(entry.did(), entry.bpn());
+            }
+        }
+        publish(version, segments, changed, reverseIndex.partitions(), previous);
+    }
 
+    /**
+     * Waits until either this replica is elected to build the version, or another replica shared it.
+     *
+     * @return true if this replica has to build the version
+     */
+    private boolean lead(Connection connection, @Nullable Cache previous, int version) {
+        try (var primary = getConnection()) {
+            return coordinator.leadOrAwait(primary, () -> loadSharedSnapshot(connection, previous, version));
         } catch (SQLException e) {
             throw new EdcPersistenceException(e);
         }
     }
+
+    /**
+     * Loads the segments that were shared after the version of the previous cache, if the shared snapshot is at the given
+     * version or newer, and decodes them into a copy of the previous cache.
+     *
+     * @return false if the shared snapshot is older than the version, or was encoded with a different number of segments
+     */
+    private boolean loadSharedSnapshot(Connection connection, @Nullable Cache previous, int version) {
+        var since = previous != null ? previous.snapshot().version() : -1;
+        List<SharedSegment> rows;
+        try (var stream = queryExecutor.query(connection, false, this::mapSharedSegment, statements.getSharedSnapshotSinceTemplate(), since)) {
+            rows = stream.toList();
+        }
+        if (rows.isEmpty() || rows.get(0).version() < version || rows.get(0).segments() != encoder.segments()) {
+            return false;
+        }
+        var sharedVersion = rows.get(0).version();
+        var shared = rows.stream().filter(row -> row.segment() != null).toList();
+        if (previous == null && shared.size() != encoder.segments()) {
+            return false;
+        }
+
+        var segments = new ArrayList<Map<String, String>>(encoder.segments());
+        var members = new byte[encoder.segments()][];
+        var reverseIndex = new ReverseIndexUpdate(previous != null ? previous.reverseIndex() : null);
+        if (previous != null) {
+            segments.addAll(previous.segments());
+            System.arraycopy(previous.members(), 0, members, 0, members.length);
+        } else {
+            for (var i = 0; i < encoder.segments(); i++) {
+                segments.add(Map.of());
+            }
+        }
+        for (var row : shared) {
+            segments.get(row.segment()).forEach((bpn, did) -> reverseIndex.remove(did, bpn));
+            var segment = new HashMap<String, String>();
+            encoder.decodeSegment(row.data(), segment::put);
+            segment.forEach((bpn, did) -> reverseIndex.add(did, bpn));
+            segments.set(row.segment(), segment);
+            members[row.segment()] = row.data();
+        }
+        advanceCache(new Cache(new DidEntrySnapshot(sharedVersion, encoder.assemble(members)), segments, members, reverseIndex.partitions()));
+        monitor.debug("Loaded %d shared snapshot segments at version %d".formatted(shared.size(), sharedVersion));
+        return true;
+    }
+
+    /**
+     * Shares the segments that changed since the previous cache, if the shared snapshot is at the version of the previous
+     * cache, or all segments, if it is older, e.g. because a replica failed to share a version. Newer shared snapshots are
+     * left as they are. The shared snapshot is locked meanwhile, so that concurrent replicas share one after the other.
+     */
+    private void share(@Nullable Cache previous, Cache current, boolean[] changed) {
+        var version = (int) current.snapshot().version();
+        var since = previous != null ? (int) previous.snapshot().version() : -1;
+        transactionContext.execute(() -> {
+            try (var connection = getConnection()) {
+                var shared = queryExecutor.single(connection, false, r -> new int[]{ r.getInt(1), r.getInt(2) }, statements.getLockSharedSnapshotStatement());
+                if (shared == null || shared[0] >= version) {
+                    return;
+                }
+                var complete = shared[0] != since || shared[1] != encoder.segments();
+                for (var i = 0; i < changed.length; i++) {
+                    if (complete || changed[i]) {
+                        queryExecutor.execute(connection, statements.getUpsertSharedSegmentTemplate(), i, version, current.members()[i]);
+                    }
+                }
+                if (complete) {
+                    queryExecutor.execute(connection, statements.getDeleteSharedSegmentsTemplate(), encoder.segments());
+                }
+                queryExecutor.execute(connection, statements.getUpdateSharedSnapshotTemplate(), version, encoder.segments());
+            } catch (SQLException e) {
+                throw new EdcPersistenceException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns a modifiable segment of the BPN, copying it on first access, because the segments of the previous cache are shared.
+     */
+    private Map<String, String> segment(List<Map<String, String>> segments, boolean[] changed, String bpn) {
+        var index = encoder.segmentOf(bpn);
+        if (!changed[index]) {
+            segments.set(index, new HashMap<>(segments.get(index)));
+            changed[index] = true;
+        }
+        return segments.get(index);
+    }
+
+    /**
+     * Compresses the changed segments, re-uses the members of the previous cache for the others, and publishes the cache.
+     * The entries of a segment are encoded in the order of their BPNs, because the iteration order of a segment depends on
+     * how it was built. This way, every replica encodes a version identically, so that a download can be resumed with a
+     * range request to another replica.
+     */
+    private void publish(int version, List<Map<String, String>> segments, boolean[] changed, List<Map<String, List<String>>> reverseIndex, @Nullable Cache previous) {
+        var entries = new SnapshotEntries[encoder.segments()];
+        var count = 0L;
+        for (var i = 0; i < entries.length; i++) {
+            if (changed[i]) {
+                var segment = segments.get(i);
+                entries[i] = action -> segment.entrySet().stream()
+                        .sorted(Map.Entry.comparingByKey())
+                        .forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+                count += segment.size();
+            }
+        }
+        var members = encoder.encodeSegments(entries, count);
+        for (var i = 0; i < members.length; i++) {
+            if (members[i] == null) {
+                members[i] = previous.members()[i];
+            }
+        }
+        var current = new Cache(new DidEntrySnapshot(version, encoder.assemble(members)), segments, members, reverseIndex);
+        if (advanceCache(current) && coordinator != null) {
+            share(previous, current, changed);
+        }
+    }
+
+    /**
+     * Publishes the cache, unless a concurrent refresh already published the same or a newer version, so that the cache
+     * never goes back to an older version.
+     *
+     * @return true if the cache was published
+     */
+    private boolean advanceCache(Cache current) {
+        var published = cache.get();
+        while (published == null || published.snapshot().version() < current.snapshot().version()) {
+            if (cache.compareAndSet(published, current)) {
+                return true;
+            }
+            published = cache.get();
+        }
+        return false;
+    }
+
+    private @Nullable String lookup(Cache cache, String bpn) {
+        return cache.segments().get(encoder.segmentOf(bpn)).get(bpn);
+    }
+
+    private Cache cache() {
+        if (cache.get() == null) {
+            transactionContext.execute(this::refreshFromReadDataSource);
+        }
+        return cache.get();
+    }
+
+    /**
+     * The locally cached state of the directory. The indexes must not be modified once the cache is published.
+     *
+     * @param segments     the entries, partitioned into the segments of the snapshot
+     * @param members      the compressed segments the snapshot was assembled from
+     * @param reverseIndex the BPNs of each DID, partitioned by the segment of the DID
+     */
+    private record Cache(DidEntrySnapshot snapshot, List<Map<String, String>> segments, byte[][] members, List<Map<String, List<String>>> reverseIndex) {
+    }
+
+    /**
+     * Applies changes to a copy of a partitioned reverse index. A partition is copied when it is changed first, and the
+     * BPN list of a DID when it is changed first, so the cost of a refresh depends on the number of changes rather than on
+     * the size of the directory. Everything else is shared with the previous cache.
+     */
+    private final class ReverseIndexUpdate {
+        private final List<Map<String, List<String>>> partitions;
+        private final boolean[] copied;
+        // lists of a new index are never shared, so they need not be tracked
+        private final boolean fresh;
+        private final Set<List<String>> copiedLists = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * @param previous the reverse index to copy, or {@code null} to build a new one
+         */
+        ReverseIndexUpdate(@Nullable List<Map<String, List<String>>> previous) {
+            copied = new boolean[encoder.segments()];
+            fresh = previous == null;
+            if (previous != null) {
+                partitions = new ArrayList<>(previous);
+            } else {
+                partitions = new ArrayList<>(encoder.segments());
+                for (var i = 0; i < encoder.segments(); i++) {
+                    partitions.add(new HashMap<>());
+                }
+                Arrays.fill(copied, true);
+            }
+        }
+
+        void add(String did, String bpn) {
+            var partition = partition(did);
+            var bpns = partition.get(did);
+            if (bpns == null) {
+                bpns = new ArrayList<>();
+                if (!fresh) {
+                    copiedLists.add(bpns);
+                }
+                partition.put(did, bpns);
+            } else {
+                bpns = mutable(partition, did, bpns);
+            }
+            bpns.add(bpn);
+        }
+
+        void remove(String did, String bpn) {
+            var bpns = partitions.get(encoder.segmentOf(did)).get(did);
+            if (bpns == null || !bpns.contains(bpn)) {
+                return;
+            }
+            var partition = partition(did);
+            bpns = mutable(partition, did, bpns);
+            bpns.remove(bpn);
+            if (bpns.isEmpty()) {
+                partition.remove(did);
+            }
+        }
+
+        List<Map<String, List<String>>> partitions() {
+            return partitions;
+        }
+
+        private Map<String, List<String>> partition(String did) {
+            var index = encoder.segmentOf(did);
+            if (!copied[index]) {
+                partitions.set(index, new HashMap<>(partitions.get(index)));
+                copied[index] = true;
+            }
+            return partitions.get(index);
+        }
+
+        private List<String> mutable(Map<String, List<String>> partition, String did, List<String> bpns) {
+            if (fresh || copiedLists.contains(bpns)) {
+                return bpns;
+            }
+            var copy = new ArrayList<>(bpns);
+            copiedLists.add(copy);
+            partition.put(did, copy);
+            return copy;
+        }
+    }
+
+    /**
+     * A queued write. A {@code null} DID denotes a deletion.
+     */
+    private record Write(String bpn, @Nullable String did, CompletableFuture<Void> done) {
+    }
+
+    /**
+     * A row of the changes table. A {@code null} DID denotes a deletion.
+     */
+    private record Change(int version, String bpn, @Nullable String did) {
+    }
+
+    /**
+     * A row of the shared snapshot query. The segment and data are {@code null} if no segment was shared since the requested version.
+     */
+    private record SharedSegment(int version, int segments, @Nullable Integer segment, @Nullable byte[] data) {
+    }
 }
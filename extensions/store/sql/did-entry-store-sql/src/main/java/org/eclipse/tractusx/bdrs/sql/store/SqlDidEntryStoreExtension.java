@@ -23,21 +23,32 @@ import org.eclipse.edc.runtime.metamodel.annotation.Extension;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.runtime.metamodel.annotation.Provider;
 import org.eclipse.edc.runtime.metamodel.annotation.Setting;
+import org.eclipse.edc.spi.EdcException;
+import org.eclipse.edc.spi.security.Vault;
 import org.eclipse.edc.spi.system.ServiceExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
 import org.eclipse.edc.spi.types.TypeManager;
 import org.eclipse.edc.sql.QueryExecutor;
 import org.eclipse.edc.transaction.datasource.spi.DataSourceRegistry;
 import org.eclipse.edc.transaction.spi.TransactionContext;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 import org.eclipse.tractusx.bdrs.sql.store.schema.DidEntryStoreStatements;
 import org.eclipse.tractusx.bdrs.sql.store.schema.PostgresDialectStatements;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import static java.util.Optional.ofNullable;
 import static org.eclipse.tractusx.bdrs.sql.store.SqlDidEntryStoreExtension.NAME;
 
 @Extension(value = NAME)
@@ -54,7 +65,49 @@ public class SqlDidEntryStoreExtension implements ServiceExtension {
 
     @Setting(value = "Period in seconds at which the database is polled for updated entries. Defaults to " + DEFAULT_PERIOD_SEC + " sec.")
     public static final String PERIOD_PROPERTY = "edc.bdrs.didentry.store.cache.period";
+
+    @Setting(value = "Number of versions for which changes are retained to serve directory deltas. Defaults to " + SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE + ".")
+    public static final String CHANGE_LOG_SIZE_PROPERTY = "edc.bdrs.didentry.store.changelog.size";
+
+    @Setting(value = "Number of separately compressed segments of the directory snapshot, a power of two. Defaults to " + SegmentedSnapshotEncoder.DEFAULT_SEGMENTS + ".")
+    public static final String SNAPSHOT_SEGMENTS_PROPERTY = "edc.bdrs.didentry.store.snapshot.segments";
+
+    @Setting(value = "Number of threads that compress snapshot segments in parallel. Defaults to 1, i.e. segments are compressed on the writing thread.")
+    public static final String SNAPSHOT_PARALLELISM_PROPERTY = "edc.bdrs.didentry.store.snapshot.parallelism";
+
+    @Setting(value = "Minimum number of entries to compress for which snapshot segments are compressed in parallel. Defaults to " + SegmentedSnapshotEncoder.DEFAULT_PARALLEL_THRESHOLD + ".")
+    public static final String SNAPSHOT_PARALLEL_THRESHOLD_PROPERTY = "edc.bdrs.didentry.store.snapshot.parallel.threshold";
+
+    @Setting(value = "If true, every replica listens for change notifications of the database and updates its cache right away. Polling then only serves as a safety net. Defaults to false.")
+    public static final String LISTEN_PROPERTY = "edc.bdrs.didentry.store.cache.listen";
+
+    @Setting(value = "If true, the cache and snapshot are rebuilt on a background thread after writes and cache updates, instead of within the write. " +
+            "Concurrent rebuilds are coalesced. Writes then return before lookups and the directory reflect them. Defaults to false.")
+    public static final String REBUILD_ASYNC_PROPERTY = "edc.bdrs.didentry.store.cache.rebuild.async";
+
+    @Setting(value = "Number of rows fetched per round trip when the cache loads all entries. 0 fetches all rows at once. Defaults to " + SqlDidEntryStore.DEFAULT_FETCH_SIZE + ".")
+    public static final String FETCH_SIZE_PROPERTY = "edc.bdrs.didentry.store.cache.fetch.size";
+
+    @Setting(required = false, value = "Name of a read-only data source, e.g. of a streaming replica of the database, from which version polls, cache loads and deltas are read. " +
+            "Writes always go to the data source of " + DATASOURCE_SETTING_NAME + ". Defaults to that data source.")
+    public static final String READ_DATASOURCE_PROPERTY = "edc.bdrs.didentry.store.cache.datasource";
+
+    @Setting(value = "If true, the compressed snapshot segments are shared between replicas through the database, so that only the replica that wrote a change " +
+            "compresses them, and the others load and decode them. All replicas must use the same number of snapshot segments. Defaults to false.")
+    public static final String SHARED_SNAPSHOT_PROPERTY = "edc.bdrs.didentry.store.snapshot.shared";
+
+    @Setting(value = "Maximum time in milliseconds a replica waits for the elected replica to share a snapshot version, before it builds the version itself. " +
+            "Defaults to 10000 ms.")
+    public static final String SHARED_SNAPSHOT_WAIT_PROPERTY = "edc.bdrs.didentry.store.snapshot.shared.wait";
+
+    @Setting(value = "Maximum number of concurrent single-entry writes that are committed together, in one transaction and at one version. " +
+            "Defaults to 1, i.e. every write is committed in a transaction of its own.")
+    public static final String WRITE_BATCH_SIZE_PROPERTY = "edc.bdrs.didentry.store.write.batch.size";
+
+    @Setting(value = "Time in milliseconds a write waits for further writes to join its batch. Only applies if writes are batched. Defaults to 0 ms.")
+    public static final String WRITE_BATCH_LINGER_PROPERTY = "edc.bdrs.didentry.store.write.batch.linger";
     public static final String MONITOR_PREFIX = "SQL DidEntry Store";
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
 
 
     @Inject
@@ -69,10 +122,18 @@ public class SqlDidEntryStoreExtension implements ServiceExtension {
     @Inject
     private QueryExecutor queryExecutor;
 
+    @Inject
+    private Vault vault;
+
     @Inject(required = false)
     private DidEntryStoreStatements dialect;
     private SqlDidEntryStore store;
     private ScheduledFuture<?> periodicFuture;
+    private ForkJoinPool compressionPool;
+    private DidEntryChangeListener listener;
+    private ExecutorService listenerExecutor;
+    private ExecutorService refreshExecutor;
+    private ExecutorService rebuildExecutor;
     private ServiceExtensionContext context;
 
     @Override
@@ -91,27 +152,95 @@ public class SqlDidEntryStoreExtension implements ServiceExtension {
         long period = context.getConfig().getInteger(PERIOD_PROPERTY, DEFAULT_PERIOD_SEC);
         context.getMonitor().withPrefix(MONITOR_PREFIX)
                 .debug("Schedule periodic cache update every %d seconds, starting in %d seconds".formatted(period, initialDelay));
+        var listen = context.getConfig().getBoolean(LISTEN_PROPERTY, false);
+        Runnable updateCache = () -> store.updateCache();
+        if (listen) {
+            // the poll and the listener update the cache through one rebuilder, so that they never refresh it concurrently
+            refreshExecutor = Executors.newSingleThreadExecutor();
+            updateCache = new CacheRebuilder(updateCache, refreshExecutor, context.getMonitor().withPrefix(MONITOR_PREFIX))::trigger;
+        }
         var executor = Executors.newSingleThreadScheduledExecutor();
-        periodicFuture = executor.scheduleAtFixedRate(() -> store.updateCache(), initialDelay, period, TimeUnit.SECONDS);
+        periodicFuture = executor.scheduleAtFixedRate(updateCache, initialDelay, period, TimeUnit.SECONDS);
+
+        if (listen) {
+            var dataSourceName = context.getConfig().getString(DATASOURCE_SETTING_NAME, DataSourceRegistry.DEFAULT_DATASOURCE);
+            listener = new DidEntryChangeListener(() -> createListenerConnection(dataSourceName), getDialect().getNotificationChannel(),
+                    version -> store.observeVersion(version), updateCache, RECONNECT_DELAY, context.getMonitor().withPrefix(MONITOR_PREFIX));
+            listenerExecutor = Executors.newSingleThreadExecutor();
+            listener.start(listenerExecutor);
+        }
     }
 
     @Override
     public void shutdown() {
+        if (listener != null) {
+            listener.stop();
+            listenerExecutor.shutdownNow();
+        }
         if (periodicFuture != null && !periodicFuture.isCancelled()) {
             periodicFuture.cancel(true);
         }
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+        if (compressionPool != null) {
+            compressionPool.shutdownNow();
+        }
     }
 
     @Provider
     public DidEntryStore createSqlDidEntryStore(ServiceExtensionContext context) {
         if (store == null) {
             var dataSourceName = context.getConfig().getString(DATASOURCE_SETTING_NAME, DataSourceRegistry.DEFAULT_DATASOURCE);
+            var changeLogSize = context.getConfig().getInteger(CHANGE_LOG_SIZE_PROPERTY, SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE);
+            var segments = context.getConfig().getInteger(SNAPSHOT_SEGMENTS_PROPERTY, SegmentedSnapshotEncoder.DEFAULT_SEGMENTS);
+            var parallelism = context.getConfig().getInteger(SNAPSHOT_PARALLELISM_PROPERTY, 1);
+            var parallelThreshold = context.getConfig().getLong(SNAPSHOT_PARALLEL_THRESHOLD_PROPERTY, SegmentedSnapshotEncoder.DEFAULT_PARALLEL_THRESHOLD);
+            if (parallelism > 1) {
+                compressionPool = new ForkJoinPool(parallelism);
+            }
+            var fetchSize = context.getConfig().getInteger(FETCH_SIZE_PROPERTY, SqlDidEntryStore.DEFAULT_FETCH_SIZE);
+            if (context.getConfig().getBoolean(REBUILD_ASYNC_PROPERTY, false)) {
+                rebuildExecutor = Executors.newSingleThreadExecutor();
+            }
+            SnapshotBuildCoordinator coordinator = null;
+            if (context.getConfig().getBoolean(SHARED_SNAPSHOT_PROPERTY, false)) {
+                var maxWait = Duration.ofMillis(context.getConfig().getLong(SHARED_SNAPSHOT_WAIT_PROPERTY, SnapshotBuildCoordinator.DEFAULT_MAX_WAIT.toMillis()));
+                coordinator = new SnapshotBuildCoordinator(queryExecutor, getDialect(), SnapshotBuildCoordinator.DEFAULT_LOCK_KEY, maxWait,
+                        SnapshotBuildCoordinator.DEFAULT_POLL_INTERVAL, context.getMonitor().withPrefix(MONITOR_PREFIX));
+            }
             store = new SqlDidEntryStore(dataSourceRegistry, dataSourceName, transactionContext, typeManager.getMapper(), queryExecutor, getDialect(),
-                    context.getMonitor().withPrefix(MONITOR_PREFIX));
+                    context.getMonitor().withPrefix(MONITOR_PREFIX), changeLogSize, new SegmentedSnapshotEncoder(segments, compressionPool, parallelThreshold),
+                    rebuildExecutor, fetchSize, context.getConfig().getString(READ_DATASOURCE_PROPERTY, null),
+                    coordinator, context.getConfig().getInteger(WRITE_BATCH_SIZE_PROPERTY, 1),
+                    Duration.ofMillis(context.getConfig().getLong(WRITE_BATCH_LINGER_PROPERTY, 0L)));
         }
         return store;
     }
 
+    /**
+     * Opens a connection to the database of the data source that is not managed by the pool, with the same settings the
+     * schema migration uses.
+     */
+    private Connection createListenerConnection(String dataSourceName) throws SQLException {
+        var prefix = "edc.datasource." + dataSourceName + ".";
+        var url = resolve(prefix + "url");
+        if (url == null) {
+            throw new EdcException("Mandatory config '%surl' not found".formatted(prefix));
+        }
+        var properties = new Properties();
+        ofNullable(resolve(prefix + "user")).ifPresent(user -> properties.put("user", user));
+        ofNullable(resolve(prefix + "password")).ifPresent(password -> properties.put("password", password));
+        return DriverManager.getConnection(url, properties);
+    }
+
+    private String resolve(String key) {
+        return ofNullable(vault.resolveSecret(key)).orElseGet(() -> context.getConfig().getString(key, null));
+    }
+
     private int randomDelay() {
         return 1 + new Random().nextInt(4);
     }
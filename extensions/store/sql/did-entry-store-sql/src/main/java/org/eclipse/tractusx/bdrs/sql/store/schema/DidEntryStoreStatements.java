@@ -41,24 +41,157 @@ public interface DidEntryStoreStatements extends SqlStatements {
         return "updated_at";
     }
 
-    String getDeleteByBpnTemplate();
-
-    String getInsertTemplate();
-
-    String getUpdateTemplate();
-
-    String findByBpnTemplate();
-
     String getLatestVersionStatement();
 
+    /**
+     * Returns the version and locks it until the end of the transaction.
+     */
+    String getLockLatestVersionStatement();
+
     String getInsertMultipleStatement(List<DidEntry> entries);
 
+    /**
+     * Copies entries in text format from the client into the table, with the columns BPN, DID and version.
+     */
+    String getCopyStatement();
+
     default String getVersionColumn() {
         return "version";
     }
 
-    String updateLatestVersionTemplate();
-
+    /**
+     * Increments the version atomically and returns the new version. The time of the update is the only parameter.
+     */
+    String getIncrementVersionTemplate();
+
+    /**
+     * Increments the version, writes the entry at the new version, removes its tombstone, records the change and prunes the
+     * changes and tombstones that are no longer retained, in one statement. Returns the new version.
+     * The parameters are the time of the update, the BPN and DID of the entry, the BPN, the BPN and DID of the change, and
+     * twice the number of retained versions.
+     */
+    String getUpsertTemplate();
+
+    /**
+     * Deletes the entry and, if it existed, increments the version, writes its tombstone, records the change and prunes the
+     * changes and tombstones that are no longer retained, in one statement. Returns the new version, or no row if the
+     * entry did not exist.
+     * The parameters are the BPN, the time of the update, the BPN of the tombstone, the BPN of the change, and twice the
+     * number of retained versions.
+     */
+    String getDeleteAndRecordTemplate();
+
+    /**
+     * Writes the entry at a version that was already incremented, removes its tombstone and records the change, in one
+     * statement. Used to apply several writes at one version.
+     * The parameters are the BPN, DID and version of the entry, the BPN of the tombstone, and the version, BPN and DID of the
+     * change.
+     */
+    String getUpsertAtVersionTemplate();
+
+    /**
+     * Deletes the entry and, if it existed, writes its tombstone and records the change at a version that was already
+     * incremented, in one statement. Used to apply several writes at one version. Returns the number of deleted entries as
+     * update count.
+     * The parameters are the BPN, the version of the tombstone and the version of the change.
+     */
+    String getDeleteAtVersionTemplate();
 
     String getMetadataTable();
+
+    default String getChangesTableName() {
+        return "edc_did_entry_changes";
+    }
+
+    default String getIdColumn() {
+        return "id";
+    }
+
+    String getChangesSinceTemplate();
+
+    String getDeleteChangesTemplate();
+
+    default String getTombstonesTableName() {
+        return "edc_did_entry_tombstones";
+    }
+
+    /**
+     * Returns the BPN and DID of all entries, in this order.
+     */
+    String getLoadEntriesStatement();
+
+    /**
+     * Returns the entries written after a version.
+     */
+    String getEntriesSinceTemplate();
+
+    /**
+     * Returns the BPNs deleted after a version.
+     */
+    String getTombstonesSinceTemplate();
+
+    /**
+     * Deletes the tombstones of the BPNs whose entries were written at a version.
+     */
+    String getDeleteTombstonesOfVersionTemplate();
+
+    /**
+     * Deletes the tombstones up to and including a version.
+     */
+    String getDeleteTombstonesTemplate();
+
+    default String getSnapshotTableName() {
+        return "edc_did_entry_snapshot";
+    }
+
+    default String getSnapshotSegmentsTableName() {
+        return "edc_did_entry_snapshot_segments";
+    }
+
+    default String getSegmentsColumn() {
+        return "segments";
+    }
+
+    default String getSegmentColumn() {
+        return "segment";
+    }
+
+    default String getDataColumn() {
+        return "data";
+    }
+
+    /**
+     * Returns the version and number of segments of the shared snapshot, and locks it until the transaction ends.
+     */
+    String getLockSharedSnapshotStatement();
+
+    /**
+     * Returns the version and number of segments of the shared snapshot, with one row per segment written after a version,
+     * containing the segment and its data, or a single row without segment if none was written.
+     */
+    String getSharedSnapshotSinceTemplate();
+
+    String getUpsertSharedSegmentTemplate();
+
+    /**
+     * Deletes the shared segments from a segment number on.
+     */
+    String getDeleteSharedSegmentsTemplate();
+
+    String getUpdateSharedSnapshotTemplate();
+
+    /**
+     * Attempts to acquire an advisory lock with the given key until the end of the transaction, and returns whether it was acquired.
+     */
+    String getTryAdvisoryLockTemplate();
+
+    default String getNotificationChannel() {
+        return "edc_did_entry_changes";
+    }
+
+    /**
+     * Notifies listeners on the notification channel once the current transaction commits. The new version is the only
+     * parameter, and the payload of the notification, see {@link org.eclipse.tractusx.bdrs.sql.store.DidEntryChangeListener}.
+     */
+    String getNotifyTemplate();
 }
@@ -26,52 +26,163 @@ import java.util.stream.Collectors;
 
 public class PostgresDialectStatements implements DidEntryStoreStatements {
     @Override
-    public String getDeleteByBpnTemplate() {
-        return executeStatement()
-                .column(getBpnColumn())
-                .column(getDidColumn())
-                .delete(getDidEntryTableName(), getBpnColumn());
+    public String getLatestVersionStatement() {
+        return "SELECT * FROM %s;".formatted(getMetadataTable());
     }
 
     @Override
-    public String getInsertTemplate() {
-        return executeStatement()
-                .column(getBpnColumn())
-                .column(getDidColumn())
-                .insertInto(getDidEntryTableName());
+    public String getLockLatestVersionStatement() {
+        return "SELECT %s FROM %s FOR UPDATE;".formatted(getVersionColumn(), getMetadataTable());
     }
 
     @Override
-    public String getUpdateTemplate() {
-        return executeStatement()
-                .column(getBpnColumn())
-                .column(getDidColumn())
-                .update(getDidEntryTableName(), getBpnColumn());
+    public String getInsertMultipleStatement(List<DidEntry> entries) {
+        var str = entries.stream().map(e -> "(?, ?, ?)").collect(Collectors.joining(","));
+        return "INSERT INTO %s (%s, %s, %s) VALUES %s;".formatted(getDidEntryTableName(), getBpnColumn(), getDidColumn(), getVersionColumn(), str);
     }
 
     @Override
-    public String findByBpnTemplate() {
-        return "SELECT * FROM %s WHERE %s = ?".formatted(getDidEntryTableName(), getBpnColumn());
+    public String getCopyStatement() {
+        return "COPY %s (%s, %s, %s) FROM STDIN".formatted(getDidEntryTableName(), getBpnColumn(), getDidColumn(), getVersionColumn());
     }
 
     @Override
-    public String getLatestVersionStatement() {
-        return "SELECT * FROM %s;".formatted(getMetadataTable());
+    public String getIncrementVersionTemplate() {
+        return "UPDATE %s SET %s = %s + 1, %s = ? RETURNING %s;"
+                .formatted(getMetadataTable(), getVersionColumn(), getVersionColumn(), getUpdatedAtColumn(), getVersionColumn());
     }
 
     @Override
-    public String getInsertMultipleStatement(List<DidEntry> entries) {
-        var str = entries.stream().map(e -> "(?, ?)").collect(Collectors.joining(","));
-        return "INSERT INTO %s (%s, %s) VALUES %s;".formatted(getDidEntryTableName(), getBpnColumn(), getDidColumn(), str);
+    public String getUpsertTemplate() {
+        return ("WITH v AS (UPDATE %1$s SET %4$s = %4$s + 1, %5$s = ? RETURNING %4$s), " +
+                "e AS (INSERT INTO %2$s (%6$s, %7$s, %4$s) SELECT ?, ?, %4$s FROM v " +
+                "ON CONFLICT (%6$s) DO UPDATE SET %7$s = EXCLUDED.%7$s, %4$s = EXCLUDED.%4$s), " +
+                "t AS (DELETE FROM %3$s WHERE %6$s = ?), " +
+                "c AS (INSERT INTO %8$s (%4$s, %6$s, %7$s) SELECT %4$s, ?, ? FROM v), " +
+                pruneClauses() +
+                "SELECT %4$s, pg_notify('%9$s', %4$s::text) FROM v;")
+                .formatted(getMetadataTable(), getDidEntryTableName(), getTombstonesTableName(), getVersionColumn(), getUpdatedAtColumn(),
+                        getBpnColumn(), getDidColumn(), getChangesTableName(), getNotificationChannel());
+    }
+
+    @Override
+    public String getDeleteAndRecordTemplate() {
+        return ("WITH d AS (DELETE FROM %2$s WHERE %6$s = ? RETURNING %6$s), " +
+                "v AS (UPDATE %1$s SET %4$s = %4$s + 1, %5$s = ? WHERE EXISTS (SELECT 1 FROM d) RETURNING %4$s), " +
+                "t AS (INSERT INTO %3$s (%6$s, %4$s) SELECT ?, %4$s FROM v ON CONFLICT (%6$s) DO UPDATE SET %4$s = EXCLUDED.%4$s), " +
+                "c AS (INSERT INTO %8$s (%4$s, %6$s, %7$s) SELECT %4$s, ?, NULL FROM v), " +
+                pruneClauses() +
+                "SELECT %4$s, pg_notify('%9$s', %4$s::text) FROM v;")
+                .formatted(getMetadataTable(), getDidEntryTableName(), getTombstonesTableName(), getVersionColumn(), getUpdatedAtColumn(),
+                        getBpnColumn(), getDidColumn(), getChangesTableName(), getNotificationChannel());
     }
 
     @Override
-    public String updateLatestVersionTemplate() {
-        return "UPDATE %s SET %s = ?, %s = ?;".formatted(getMetadataTable(), getVersionColumn(), getUpdatedAtColumn());
+    public String getUpsertAtVersionTemplate() {
+        return ("WITH e AS (INSERT INTO %1$s (%4$s, %5$s, %6$s) VALUES (?, ?, ?) " +
+                "ON CONFLICT (%4$s) DO UPDATE SET %5$s = EXCLUDED.%5$s, %6$s = EXCLUDED.%6$s), " +
+                "t AS (DELETE FROM %2$s WHERE %4$s = ?) " +
+                "INSERT INTO %3$s (%6$s, %4$s, %5$s) VALUES (?, ?, ?);")
+                .formatted(getDidEntryTableName(), getTombstonesTableName(), getChangesTableName(), getBpnColumn(), getDidColumn(),
+                        getVersionColumn());
+    }
+
+    @Override
+    public String getDeleteAtVersionTemplate() {
+        return ("WITH d AS (DELETE FROM %1$s WHERE %4$s = ? RETURNING %4$s), " +
+                "t AS (INSERT INTO %2$s (%4$s, %6$s) SELECT %4$s, ? FROM d ON CONFLICT (%4$s) DO UPDATE SET %6$s = EXCLUDED.%6$s) " +
+                "INSERT INTO %3$s (%6$s, %4$s, %5$s) SELECT ?, %4$s, NULL FROM d;")
+                .formatted(getDidEntryTableName(), getTombstonesTableName(), getChangesTableName(), getBpnColumn(), getDidColumn(),
+                        getVersionColumn());
     }
 
     @Override
     public String getMetadataTable() {
         return "edc_did_entry_metadata";
     }
+
+    @Override
+    public String getChangesSinceTemplate() {
+        return "SELECT %s, %s, %s FROM %s WHERE %s > ? AND %s <= ? ORDER BY %s, %s;"
+                .formatted(getVersionColumn(), getBpnColumn(), getDidColumn(), getChangesTableName(),
+                        getVersionColumn(), getVersionColumn(), getVersionColumn(), getIdColumn());
+    }
+
+    @Override
+    public String getDeleteChangesTemplate() {
+        return "DELETE FROM %s WHERE %s <= ?;".formatted(getChangesTableName(), getVersionColumn());
+    }
+
+    @Override
+    public String getNotifyTemplate() {
+        return "SELECT pg_notify('%s', ?);".formatted(getNotificationChannel());
+    }
+
+    @Override
+    public String getLoadEntriesStatement() {
+        return "SELECT %s, %s FROM %s;".formatted(getBpnColumn(), getDidColumn(), getDidEntryTableName());
+    }
+
+    @Override
+    public String getEntriesSinceTemplate() {
+        return "SELECT %s, %s FROM %s WHERE %s > ?;".formatted(getBpnColumn(), getDidColumn(), getDidEntryTableName(), getVersionColumn());
+    }
+
+    @Override
+    public String getTombstonesSinceTemplate() {
+        return "SELECT %s FROM %s WHERE %s > ?;".formatted(getBpnColumn(), getTombstonesTableName(), getVersionColumn());
+    }
+
+    @Override
+    public String getDeleteTombstonesOfVersionTemplate() {
+        return "DELETE FROM %s t USING %s e WHERE t.%s = e.%s AND e.%s = ?;"
+                .formatted(getTombstonesTableName(), getDidEntryTableName(), getBpnColumn(), getBpnColumn(), getVersionColumn());
+    }
+
+    @Override
+    public String getDeleteTombstonesTemplate() {
+        return "DELETE FROM %s WHERE %s <= ?;".formatted(getTombstonesTableName(), getVersionColumn());
+    }
+
+    @Override
+    public String getLockSharedSnapshotStatement() {
+        return "SELECT %s, %s FROM %s FOR UPDATE;".formatted(getVersionColumn(), getSegmentsColumn(), getSnapshotTableName());
+    }
+
+    @Override
+    public String getSharedSnapshotSinceTemplate() {
+        return "SELECT s.%s, s.%s, g.%s, g.%s FROM %s s LEFT JOIN %s g ON g.%s > ?;"
+                .formatted(getVersionColumn(), getSegmentsColumn(), getSegmentColumn(), getDataColumn(), getSnapshotTableName(),
+                        getSnapshotSegmentsTableName(), getVersionColumn());
+    }
+
+    @Override
+    public String getUpsertSharedSegmentTemplate() {
+        return "INSERT INTO %s (%s, %s, %s) VALUES (?, ?, ?) ON CONFLICT (%s) DO UPDATE SET %s = EXCLUDED.%s, %s = EXCLUDED.%s;"
+                .formatted(getSnapshotSegmentsTableName(), getSegmentColumn(), getVersionColumn(), getDataColumn(), getSegmentColumn(),
+                        getVersionColumn(), getVersionColumn(), getDataColumn(), getDataColumn());
+    }
+
+    @Override
+    public String getDeleteSharedSegmentsTemplate() {
+        return "DELETE FROM %s WHERE %s >= ?;".formatted(getSnapshotSegmentsTableName(), getSegmentColumn());
+    }
+
+    @Override
+    public String getUpdateSharedSnapshotTemplate() {
+        return "UPDATE %s SET %s = ?, %s = ?;".formatted(getSnapshotTableName(), getVersionColumn(), getSegmentsColumn());
+    }
+
+    @Override
+    public String getTryAdvisoryLockTemplate() {
+        return "SELECT pg_try_advisory_xact_lock(?);";
+    }
+
+    /**
+     * Prunes the changes and tombstones older than the retained number of versions, relative to the version of the CTE {@code v}.
+     */
+    private String pruneClauses() {
+        return "pc AS (DELETE FROM %8$s WHERE %4$s <= (SELECT %4$s FROM v) - ?), " +
+                "pt AS (DELETE FROM %3$s WHERE %4$s <= (SELECT %4$s FROM v) - ?) ";
+    }
 }
@@ -0,0 +1,29 @@
+--
+--  * Copyright (c) 2026 Contributors to the Eclipse Foundation
+--  *
+--  * See the NOTICE file(s) distributed with this work for additional
+--  * information regarding copyright ownership.
+--  *
+--  * This program and the accompanying materials are made available under the
+--  * terms of the Apache License, Version 2.0 which is available at
+--  * https://www.apache.org/licenses/LICENSE-2.0.
+--  *
+--  * Unless required by applicable law or agreed to in writing, software
+--  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+--  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+--  * License for the specific language governing permissions and limitations
+--  * under the License.
+--  *
+--  * SPDX-License-Identifier: Apache-2.0
+--
+
+-- every change of edc_did_entries, keyed by the version it produced. A NULL did denotes a deletion.
+CREATE TABLE IF NOT EXISTS edc_did_entry_changes
+(
+    id      BIGSERIAL PRIMARY KEY,
+    version INT     NOT NULL,
+    bpn     VARCHAR NOT NULL,
+    did     VARCHAR
+);
+
+CREATE INDEX IF NOT EXISTS edc_did_entry_changes_version_idx ON edc_did_entry_changes (version);
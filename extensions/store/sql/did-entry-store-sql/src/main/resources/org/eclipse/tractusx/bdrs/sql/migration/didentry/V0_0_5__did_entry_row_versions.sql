@@ -0,0 +1,32 @@
+--
+--  * Copyright (c) 2026 Contributors to the Eclipse Foundation
+--  *
+--  * See the NOTICE file(s) distributed with this work for additional
+--  * information regarding copyright ownership.
+--  *
+--  * This program and the accompanying materials are made available under the
+--  * terms of the Apache License, Version 2.0 which is available at
+--  * https://www.apache.org/licenses/LICENSE-2.0.
+--  *
+--  * Unless required by applicable law or agreed to in writing, software
+--  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+--  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+--  * License for the specific language governing permissions and limitations
+--  * under the License.
+--  *
+--  * SPDX-License-Identifier: Apache-2.0
+--
+
+-- the version at which each entry was last written, so that caches can fetch only the entries changed since their version
+ALTER TABLE edc_did_entries ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS edc_did_entries_version_idx ON edc_did_entries (version);
+
+-- the version at which each removed BPN was deleted. A BPN is either in edc_did_entries or here, never in both.
+CREATE TABLE IF NOT EXISTS edc_did_entry_tombstones
+(
+    bpn     VARCHAR NOT NULL PRIMARY KEY,
+    version INT     NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS edc_did_entry_tombstones_version_idx ON edc_did_entry_tombstones (version);
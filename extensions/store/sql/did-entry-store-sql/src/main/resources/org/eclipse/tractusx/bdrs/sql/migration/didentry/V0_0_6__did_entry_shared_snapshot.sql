@@ -0,0 +1,39 @@
+--
+--  * Copyright (c) 2026 Contributors to the Eclipse Foundation
+--  *
+--  * See the NOTICE file(s) distributed with this work for additional
+--  * information regarding copyright ownership.
+--  *
+--  * This program and the accompanying materials are made available under the
+--  * terms of the Apache License, Version 2.0 which is available at
+--  * https://www.apache.org/licenses/LICENSE-2.0.
+--  *
+--  * Unless required by applicable law or agreed to in writing, software
+--  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+--  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+--  * License for the specific language governing permissions and limitations
+--  * under the License.
+--  *
+--  * SPDX-License-Identifier: Apache-2.0
+--
+
+-- the version and number of segments of the snapshot that is shared between replicas. Version 0 means none was shared yet.
+CREATE TABLE IF NOT EXISTS edc_did_entry_snapshot
+(
+    version  INT NOT NULL DEFAULT 0,
+    segments INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO edc_did_entry_snapshot (version, segments)
+SELECT 0, 0
+WHERE NOT EXISTS (SELECT * FROM edc_did_entry_snapshot);
+
+-- the compressed segments of the shared snapshot, with the version at which each segment was last written
+CREATE TABLE IF NOT EXISTS edc_did_entry_snapshot_segments
+(
+    segment INT   NOT NULL PRIMARY KEY,
+    version INT   NOT NULL,
+    data    BYTEA NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS edc_did_entry_snapshot_segments_version_idx ON edc_did_entry_snapshot_segments (version);
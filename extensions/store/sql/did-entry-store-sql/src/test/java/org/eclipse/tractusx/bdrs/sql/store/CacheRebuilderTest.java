@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.sql.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CacheRebuilderTest {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Test
+    void trigger_shouldCoalescePendingTriggers() {
+        var rebuilds = new AtomicInteger();
+        var rebuilder = new CacheRebuilder(rebuilds::incrementAndGet, tasks::add, mock());
+
+        rebuilder.trigger();
+        rebuilder.trigger();
+        rebuilder.trigger();
+
+        assertThat(tasks).hasSize(1);
+        tasks.poll().run();
+        assertThat(rebuilds).hasValue(1);
+    }
+
+    @Test
+    void trigger_whileRebuilding_shouldRebuildAgain() {
+        var rebuilds = new AtomicInteger();
+        var rebuilder = new CacheRebuilder[1];
+        rebuilder[0] = new CacheRebuilder(() -> {
+            if (rebuilds.incrementAndGet() == 1) {
+                rebuilder[0].trigger();
+                rebuilder[0].trigger();
+            }
+        }, tasks::add, mock());
+
+        rebuilder[0].trigger();
+        tasks.poll().run();
+
+        assertThat(rebuilds).hasValue(2);
+        assertThat(tasks).isEmpty();
+    }
+
+    @Test
+    void trigger_whenRebuildFails_shouldRebuildOnNextTrigger() {
+        var rebuilds = new AtomicInteger();
+        var rebuilder = new CacheRebuilder(() -> {
+            rebuilds.incrementAndGet();
+            throw new IllegalStateException("failed");
+        }, tasks::add, mock());
+
+        rebuilder.trigger();
+        tasks.poll().run();
+        rebuilder.trigger();
+        tasks.poll().run();
+
+        assertThat(rebuilds).hasValue(2);
+    }
+}
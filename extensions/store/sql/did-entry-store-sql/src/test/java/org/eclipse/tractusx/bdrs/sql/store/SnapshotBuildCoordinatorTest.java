@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.sql.store;
+
+import org.eclipse.edc.junit.annotations.PostgresqlIntegrationTest;
+import org.eclipse.edc.sql.QueryExecutor;
+import org.eclipse.edc.sql.testfixtures.PostgresqlStoreSetupExtension;
+import org.eclipse.tractusx.bdrs.sql.store.schema.PostgresDialectStatements;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@PostgresqlIntegrationTest
+class SnapshotBuildCoordinatorTest {
+    private static final long LOCK_KEY = 42;
+
+    @RegisterExtension
+    static PostgresqlStoreSetupExtension extension =
+            new PostgresqlStoreSetupExtension(getPostgresTestContainerName());
+
+    private QueryExecutor queryExecutor;
+    private Connection leader;
+    private Connection follower;
+
+    private static String getPostgresTestContainerName() {
+        try (InputStream resourceInput = Optional.ofNullable(SqlDidEntryStore.class
+                .getResourceAsStream("/Dockerfile")).orElseThrow();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(resourceInput))) {
+            return reader.lines()
+                    .findFirst().orElseThrow()
+                    .substring(5);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @BeforeEach
+    void setUp(PostgresqlStoreSetupExtension extension, QueryExecutor queryExecutor) throws SQLException {
+        this.queryExecutor = queryExecutor;
+        var dataSource = extension.getDataSourceRegistry().resolve(extension.getDatasourceName());
+        leader = dataSource.getConnection();
+        leader.setAutoCommit(false);
+        follower = dataSource.getConnection();
+        follower.setAutoCommit(false);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        follower.rollback();
+        follower.close();
+        leader.rollback();
+        leader.close();
+    }
+
+    @Test
+    void leadOrAwait_whenNotLocked_shouldLead() {
+        var reuses = new AtomicInteger();
+
+        assertThat(coordinator(Duration.ofSeconds(5)).leadOrAwait(follower, () -> reuses.incrementAndGet() > 0)).isTrue();
+        assertThat(reuses).hasValue(0);
+    }
+
+    @Test
+    void leadOrAwait_whenLocked_shouldReuseSharedSnapshot() {
+        assertThat(coordinator(Duration.ofSeconds(5)).leadOrAwait(leader, () -> false)).isTrue();
+        var reuses = new AtomicInteger();
+
+        assertThat(coordinator(Duration.ofSeconds(5)).leadOrAwait(follower, () -> reuses.incrementAndGet() == 2)).isFalse();
+        assertThat(reuses).hasValue(2);
+    }
+
+    @Test
+    void leadOrAwait_whenLeaderFails_shouldTakeOver() {
+        assertThat(coordinator(Duration.ofSeconds(5)).leadOrAwait(leader, () -> false)).isTrue();
+        // the transaction of the leader fails, which releases the lock
+        CompletableFuture.runAsync(() -> {
+            try {
+                leader.rollback();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+
+        var start = System.nanoTime();
+        assertThat(coordinator(Duration.ofSeconds(5)).leadOrAwait(follower, () -> false)).isTrue();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void leadOrAwait_whenWaitExceeded_shouldBuild() {
+        assertThat(coordinator(Duration.ofSeconds(5)).leadOrAwait(leader, () -> false)).isTrue();
+
+        assertThat(coordinator(Duration.ofMillis(200)).leadOrAwait(follower, () -> false)).isTrue();
+    }
+
+    private SnapshotBuildCoordinator coordinator(Duration maxWait) {
+        return new SnapshotBuildCoordinator(queryExecutor, new PostgresDialectStatements(), LOCK_KEY, maxWait, Duration.ofMillis(10), mock());
+    }
+}
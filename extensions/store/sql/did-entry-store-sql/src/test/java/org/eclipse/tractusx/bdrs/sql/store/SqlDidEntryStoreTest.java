@@ -21,8 +21,11 @@ package org.eclipse.tractusx.bdrs.sql.store;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.edc.junit.annotations.PostgresqlIntegrationTest;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.persistence.EdcPersistenceException;
 import org.eclipse.edc.sql.QueryExecutor;
 import org.eclipse.edc.sql.testfixtures.PostgresqlStoreSetupExtension;
+import org.eclipse.tractusx.bdrs.snapshot.SegmentedSnapshotEncoder;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntry;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStore;
 import org.eclipse.tractusx.bdrs.spi.store.DidEntryStoreTestBase;
@@ -37,15 +40,24 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 @PostgresqlIntegrationTest
 class SqlDidEntryStoreTest extends DidEntryStoreTestBase {
@@ -90,6 +102,10 @@ class SqlDidEntryStoreTest extends DidEntryStoreTestBase {
     void tearDown(PostgresqlStoreSetupExtension extension) {
         extension.runQuery("DROP TABLE " + statements.getDidEntryTableName() + " CASCADE");
         extension.runQuery("DROP TABLE " + statements.getMetadataTable() + " CASCADE");
+        extension.runQuery("DROP TABLE " + statements.getChangesTableName() + " CASCADE");
+        extension.runQuery("DROP TABLE " + statements.getTombstonesTableName() + " CASCADE");
+        extension.runQuery("DROP TABLE " + statements.getSnapshotTableName() + " CASCADE");
+        extension.runQuery("DROP TABLE " + statements.getSnapshotSegmentsTableName() + " CASCADE");
     }
 
     @Test
@@ -107,6 +123,14 @@ class SqlDidEntryStoreTest extends DidEntryStoreTestBase {
         }
     }
 
+    @Test
+    void saveStream_shouldCopySpecialCharacters() {
+        getStore().save(Stream.of(new DidEntry("bpn\\1", "did:web:tab\tnewline\nreturn\r"), new DidEntry("bpn2", "did:web:\\N")));
+
+        assertThat(getStore().find("bpn\\1")).isEqualTo(new DidEntry("bpn\\1", "did:web:tab\tnewline\nreturn\r"));
+        assertThat(getStore().find("bpn2")).isEqualTo(new DidEntry("bpn2", "did:web:\\N"));
+    }
+
     @Test
     void save_assertVersionUpdate() {
         getStore().save(new DidEntry("bpn1", "did:web:1"));
@@ -122,6 +146,322 @@ class SqlDidEntryStoreTest extends DidEntryStoreTestBase {
         }
     }
 
+    @Test
+    void save_whenInterleavedWithReplica_shouldIncrementVersionAndIncludeOtherWrites(PostgresqlStoreSetupExtension extension) {
+        var replica = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(),
+                extension.getTransactionContext(), new ObjectMapper(), queryExecutor, statements, mock());
+        assertThat(replica.find("bpn1")).isNull();
+        getStore().save(new DidEntry("bpn1", "did:web:1"));
+
+        replica.save(new DidEntry("bpn2", "did:web:2"));
+        replica.delete("bpn1");
+        replica.delete("unknown");
+
+        assertThat(replica.snapshot().version()).isEqualTo(3);
+        assertThat(deserialize(replica.entries())).hasSize(1).containsEntry("bpn2", "did:web:2");
+        assertThat(replica.changes(0)).hasValueSatisfying(changes -> {
+            assertThat(changes.upserts()).containsOnlyKeys("bpn2");
+            assertThat(changes.deletions()).containsExactly("bpn1");
+        });
+    }
+
+    @Test
+    void save_whenRebuildAsync_shouldUpdateCacheInBackground(PostgresqlStoreSetupExtension extension) throws InterruptedException {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var store = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                    new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                    new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), executor, SqlDidEntryStore.DEFAULT_FETCH_SIZE, null, null,
+                    1, Duration.ZERO);
+            assertThat(store.find("bpn1")).isNull();
+
+            store.save(new DidEntry("bpn1", "did:web:1"));
+            store.save(new DidEntry("bpn2", "did:web:2"));
+            store.delete("bpn1");
+
+            var deadline = System.currentTimeMillis() + 5_000;
+            while (store.snapshot().version() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(store.snapshot().version()).isEqualTo(3);
+            assertThat(store.find("bpn1")).isNull();
+            assertThat(store.find("bpn2")).isEqualTo(new DidEntry("bpn2", "did:web:2"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void save_whenWritesBatched_shouldCommitConcurrentWritesTogether(PostgresqlStoreSetupExtension extension) {
+        var store = createBatchingStore(extension, 10);
+
+        writeConcurrently(IntStream.range(0, 10).<Runnable>mapToObj(i -> () -> store.save(new DidEntry("bpn" + i, "did:web:" + i))).toList())
+                .forEach(CompletableFuture::join);
+        store.delete("bpn0");
+
+        assertThat(deserialize(store.entries())).hasSize(9).containsEntry("bpn9", "did:web:9").doesNotContainKey("bpn0");
+        assertThat(store.snapshot().version()).isLessThan(10);
+        assertThat(store.changes(0)).hasValueSatisfying(changes -> {
+            assertThat(changes.upserts()).hasSize(9);
+            assertThat(changes.deletions()).containsExactly("bpn0");
+        });
+    }
+
+    @Test
+    void save_whenWriteInBatchFails_shouldOnlyFailItsCaller(PostgresqlStoreSetupExtension extension) {
+        var store = createBatchingStore(extension, 10);
+
+        // PostgreSQL rejects NUL characters in text columns
+        var writes = writeConcurrently(List.of(
+                () -> store.save(new DidEntry("bpn1", "did:web:1")),
+                () -> store.save(new DidEntry("bpn2", "did:web:\u0000")),
+                () -> store.save(new DidEntry("bpn3", "did:web:3"))));
+
+        assertThat(writes.get(0)).succeedsWithin(Duration.ZERO);
+        assertThat(writes.get(1)).failsWithin(Duration.ZERO).withThrowableThat().havingCause().isInstanceOf(EdcPersistenceException.class);
+        assertThat(writes.get(2)).succeedsWithin(Duration.ZERO);
+        assertThat(deserialize(store.entries())).containsOnlyKeys("bpn1", "bpn3");
+    }
+
+    @Test
+    void delete_whenBatchOnlyDeletesUnknownBpns_shouldNotIncrementVersion(PostgresqlStoreSetupExtension extension) {
+        var store = createBatchingStore(extension, 10);
+        store.save(new DidEntry("bpn1", "did:web:1"));
+
+        writeConcurrently(List.of(() -> store.delete("unknown1"), () -> store.delete("unknown2"), () -> store.delete("unknown3")))
+                .forEach(CompletableFuture::join);
+
+        assertThat(store.snapshot().version()).isEqualTo(1);
+        assertThat(store.changes(0)).hasValueSatisfying(changes -> assertThat(changes.upserts()).containsOnlyKeys("bpn1"));
+    }
+
+    @Test
+    void snapshot_whenPatchedAndReloaded_shouldHaveIdenticalContent(PostgresqlStoreSetupExtension extension) {
+        var patched = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE, new SegmentedSnapshotEncoder(1));
+        assertThat(patched.snapshot().version()).isZero();
+        IntStream.range(0, 200).forEach(i -> patched.save(new DidEntry("bpn" + i, "did:web:" + i)));
+        IntStream.range(0, 200).filter(i -> i % 3 == 0).forEach(i -> patched.delete("bpn" + i));
+
+        var reloaded = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE, new SegmentedSnapshotEncoder(1));
+
+        assertThat(reloaded.snapshot().version()).isEqualTo(patched.snapshot().version());
+        assertThat(reloaded.snapshot().content()).isEqualTo(patched.snapshot().content());
+    }
+
+    @Test
+    void snapshot_whenFetchSizeSmallerThanTable_shouldLoadAllEntries(PostgresqlStoreSetupExtension extension) {
+        getStore().save(IntStream.range(0, 10).mapToObj(i -> new DidEntry("bpn" + i, "did:web:" + i)));
+        var replica = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), null, 3, null, null, 1, Duration.ZERO);
+
+        assertThat(deserialize(replica.entries())).hasSize(10).containsEntry("bpn9", "did:web:9");
+        assertThat(replica.findByDid("did:web:3")).containsExactly(new DidEntry("bpn3", "did:web:3"));
+    }
+
+    @Test
+    void updateCache_whenReadDataSource_shouldReadFromIt(PostgresqlStoreSetupExtension extension) {
+        var registry = extension.getDataSourceRegistry();
+        registry.register("read-replica", registry.resolve(extension.getDatasourceName()));
+        var replica = new SqlDidEntryStore(registry, "unknown", extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), null, SqlDidEntryStore.DEFAULT_FETCH_SIZE, "read-replica", null,
+                1, Duration.ZERO);
+        assertThat(replica.find("bpn1")).isNull();
+
+        getStore().save(new DidEntry("bpn1", "did:web:1"));
+        replica.updateCache();
+
+        // the data source that is written to does not exist, so everything was read from the read data source
+        assertThat(replica.find("bpn1")).isEqualTo(new DidEntry("bpn1", "did:web:1"));
+        assertThat(replica.changes(0)).hasValueSatisfying(changes -> assertThat(changes.upserts()).containsOnlyKeys("bpn1"));
+    }
+
+    @Test
+    void listener_whenReadDataSourceBehind_shouldUpdateFromPrimary(PostgresqlStoreSetupExtension extension) throws SQLException, InterruptedException {
+        // the read data source is a transaction that took its snapshot before the write, like a replica that did not catch up
+        var stale = dataSource.getConnection();
+        stale.setAutoCommit(false);
+        stale.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        try (var statement = stale.createStatement()) {
+            statement.executeQuery(statements.getLatestVersionStatement()).close();
+        }
+        var registry = extension.getDataSourceRegistry();
+        registry.register("stale-replica", staleDataSource(stale));
+        var replica = new SqlDidEntryStore(registry, extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), null, SqlDidEntryStore.DEFAULT_FETCH_SIZE, "stale-replica", null,
+                1, Duration.ZERO);
+        assertThat(replica.find("bpn1")).isNull();
+        var listener = new DidEntryChangeListener(dataSource::getConnection, statements.getNotificationChannel(), replica::observeVersion, replica::updateCache,
+                Duration.ofMillis(100), mock());
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            listener.start(executor);
+
+            getStore().save(new DidEntry("bpn1", "did:web:1"));
+
+            // the replica does not poll, and its read data source never catches up
+            var deadline = System.currentTimeMillis() + 5_000;
+            while (replica.find("bpn1") == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(replica.find("bpn1")).isEqualTo(new DidEntry("bpn1", "did:web:1"));
+            assertThat(replica.snapshot().version()).isEqualTo(1);
+        } finally {
+            listener.stop();
+            executor.shutdownNow();
+            stale.rollback();
+            stale.close();
+        }
+    }
+
+    @Test
+    void updateCache_whenSharedSnapshot_shouldLoadSharedSegments(PostgresqlStoreSetupExtension extension) {
+        var writer = createSharingStore(extension);
+        var replica = createSharingStore(extension);
+        writer.save(IntStream.range(0, 100).mapToObj(i -> new DidEntry("bpn" + i, "did:web:" + i)));
+        assertThat(replica.find("bpn1")).isEqualTo(new DidEntry("bpn1", "did:web:1"));
+
+        writer.update(new DidEntry("bpn1", "did:web:updated"));
+        writer.delete("bpn2");
+        // entries are not read by replicas that load the shared snapshot
+        extension.runQuery("DELETE FROM " + statements.getDidEntryTableName());
+        replica.updateCache();
+
+        assertThat(replica.snapshot().version()).isEqualTo(3);
+        assertThat(replica.snapshot().content()).isEqualTo(writer.snapshot().content());
+        assertThat(deserialize(replica.entries())).hasSize(99).containsEntry("bpn1", "did:web:updated").doesNotContainKey("bpn2");
+        assertThat(replica.findByDid("did:web:updated")).containsExactly(new DidEntry("bpn1", "did:web:updated"));
+        assertThat(replica.findByDid("did:web:1")).isEmpty();
+    }
+
+    @Test
+    void save_whenSharedSnapshotAndCacheBehind_shouldNotAwaitElection(PostgresqlStoreSetupExtension extension) throws SQLException {
+        Monitor coordinatorMonitor = mock();
+        var writer = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), null, SqlDidEntryStore.DEFAULT_FETCH_SIZE, null,
+                new SnapshotBuildCoordinator(queryExecutor, statements, SnapshotBuildCoordinator.DEFAULT_LOCK_KEY, Duration.ofSeconds(1), Duration.ofMillis(10), coordinatorMonitor),
+                1, Duration.ZERO);
+        assertThat(writer.find("bpn1")).isNull();
+        getStore().save(new DidEntry("bpn1", "did:web:1"));
+
+        try (var other = dataSource.getConnection()) {
+            // another replica is elected to build a version
+            other.setAutoCommit(false);
+            queryExecutor.single(other, false, r -> r.getBoolean(1), statements.getTryAdvisoryLockTemplate(), SnapshotBuildCoordinator.DEFAULT_LOCK_KEY);
+            writer.save(new DidEntry("bpn2", "did:web:2"));
+            other.rollback();
+        }
+
+        assertThat(writer.snapshot().version()).isEqualTo(2);
+        assertThat(deserialize(writer.entries())).containsOnlyKeys("bpn1", "bpn2");
+        verifyNoInteractions(coordinatorMonitor);
+    }
+
+    @Test
+    void updateCache_shouldApplyChangesSinceLocalVersion(PostgresqlStoreSetupExtension extension) {
+        getStore().save(IntStream.range(0, 10).mapToObj(i -> new DidEntry("bpn" + i, "did:web:" + i)));
+        var replica = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(),
+                extension.getTransactionContext(), new ObjectMapper(), queryExecutor, statements, mock());
+        assertThat(replica.find("bpn1")).isNotNull();
+
+        getStore().update(new DidEntry("bpn1", "did:web:updated"));
+        getStore().delete("bpn2");
+        getStore().delete("bpn3");
+        getStore().save(new DidEntry("bpn3", "did:web:3-again"));
+        getStore().save(new DidEntry("bpn10", "did:web:10"));
+        replica.updateCache();
+
+        assertThat(replica.snapshot().version()).isEqualTo(getStore().snapshot().version());
+        assertThat(deserialize(replica.entries())).hasSize(10)
+                .containsEntry("bpn1", "did:web:updated")
+                .containsEntry("bpn3", "did:web:3-again")
+                .containsEntry("bpn10", "did:web:10")
+                .doesNotContainKey("bpn2");
+        assertThat(replica.findByDid("did:web:1")).isEmpty();
+        assertThat(replica.findByDid("did:web:updated")).containsExactly(new DidEntry("bpn1", "did:web:updated"));
+    }
+
+    @Test
+    void listener_shouldUpdateReplicaOnChange(PostgresqlStoreSetupExtension extension) throws InterruptedException {
+        var replica = new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(),
+                extension.getTransactionContext(), new ObjectMapper(), queryExecutor, statements, mock());
+        assertThat(replica.find("bpn1")).isNull();
+        var listener = new DidEntryChangeListener(dataSource::getConnection, statements.getNotificationChannel(), replica::observeVersion, replica::updateCache,
+                Duration.ofMillis(100), mock());
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            listener.start(executor);
+
+            getStore().save(new DidEntry("bpn1", "did:web:1"));
+
+            // the replica does not poll, it is only updated by the listener
+            var deadline = System.currentTimeMillis() + 5_000;
+            while (replica.find("bpn1") == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(replica.find("bpn1")).isEqualTo(new DidEntry("bpn1", "did:web:1"));
+        } finally {
+            listener.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a data source that always hands out the given connection, and keeps its transaction open when the store
+     * closes or commits it.
+     */
+    private DataSource staleDataSource(Connection connection) {
+        var handle = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ Connection.class }, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "close", "commit", "rollback", "setAutoCommit" -> null;
+                    default -> method.invoke(connection, args);
+                });
+        var staleDataSource = mock(DataSource.class);
+        try {
+            when(staleDataSource.getConnection()).thenReturn(handle);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return staleDataSource;
+    }
+
+    /**
+     * Creates a store that groups writes, and lingers long enough for concurrent writes to end up in the same batch.
+     */
+    private SqlDidEntryStore createBatchingStore(PostgresqlStoreSetupExtension extension, int maxBatchSize) {
+        return new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), null, SqlDidEntryStore.DEFAULT_FETCH_SIZE, null, null,
+                maxBatchSize, Duration.ofMillis(500));
+    }
+
+    /**
+     * Runs every write on a thread of its own and returns once all of them completed.
+     */
+    private List<CompletableFuture<Void>> writeConcurrently(List<Runnable> writes) {
+        var executor = Executors.newFixedThreadPool(writes.size());
+        try {
+            var futures = writes.stream().map(write -> CompletableFuture.runAsync(write, executor)).toList();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).handle((result, error) -> null).join();
+            return futures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SqlDidEntryStore createSharingStore(PostgresqlStoreSetupExtension extension) {
+        return new SqlDidEntryStore(extension.getDataSourceRegistry(), extension.getDatasourceName(), extension.getTransactionContext(),
+                new ObjectMapper(), queryExecutor, statements, mock(), SqlDidEntryStore.DEFAULT_CHANGE_LOG_SIZE,
+                new SegmentedSnapshotEncoder(SegmentedSnapshotEncoder.DEFAULT_SEGMENTS), null, SqlDidEntryStore.DEFAULT_FETCH_SIZE, null,
+                new SnapshotBuildCoordinator(queryExecutor, statements, SnapshotBuildCoordinator.DEFAULT_LOCK_KEY, Duration.ofSeconds(1), Duration.ofMillis(10), mock()),
+                1, Duration.ZERO);
+    }
+
     @Override
     protected DidEntryStore getStore() {
         return didEntryStore;
@@ -33,6 +33,7 @@ rootProject.name = "tractusx-bdrs"
 
 include(":spi:core-spi")
 include(":core:core-services")
+include(":core:snapshot-lib")
 include(":api:directory-api")
 include(":api:management-api")
 include(":api:authentication")
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.spi.store;
+
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The net changes applied to the directory between two versions. Intermediate states are collapsed, i.e. a BPN is either
+ * contained in the {@code upserts} or in the {@code deletions}, but never in both.
+ *
+ * @param version the version of the directory after all changes were applied
+ * @param upserts the BPN-DID mappings that were added or updated, keyed by BPN
+ * @param deletions the BPNs that were removed
+ */
+public record DidEntryChanges(long version, Map<String, String> upserts, Set<String> deletions) {
+    public DidEntryChanges {
+        requireNonNull(upserts, "upserts");
+        requireNonNull(deletions, "deletions");
+    }
+}
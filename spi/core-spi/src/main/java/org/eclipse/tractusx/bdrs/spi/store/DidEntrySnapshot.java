@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2026 Contributors to the Eclipse Foundation
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.eclipse.tractusx.bdrs.spi.store;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable view of all BPN-DID mappings at a particular version of the directory.
+ *
+ * @param version the version of the directory this snapshot was taken from. Versions increase monotonically with every change.
+ * @param content all entries serialized as JSON and compressed (GZIP). Must not be modified.
+ */
+public record DidEntrySnapshot(long version, byte[] content) {
+    public DidEntrySnapshot {
+        requireNonNull(content, "content");
+    }
+}
@@ -19,6 +19,10 @@
 
 package org.eclipse.tractusx.bdrs.spi.store;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 /**
@@ -29,7 +33,52 @@ public interface DidEntryStore {
     /**
      * Returns all serialized JSON entries as a compressed (GZIP) byte array.
      */
-    byte[] entries();
+    default byte[] entries() {
+        return snapshot().content();
+    }
+
+    /**
+     * Returns the current {@link DidEntrySnapshot}. Its version increases monotonically with every change of the directory,
+     * so clients can use it to detect whether a previously obtained snapshot is still up-to-date.
+     */
+    DidEntrySnapshot snapshot();
+
+    /**
+     * Returns the changes that were applied to the directory after the given version. If those changes cannot be
+     * reconstructed, e.g. because the version is too old or was never issued by this store, an empty {@link Optional} is
+     * returned, and clients have to fall back to a full {@link #snapshot()}.
+     *
+     * @param since the version the client currently holds
+     */
+    Optional<DidEntryChanges> changes(long since);
+
+    /**
+     * Resolves the DID for a single BPN. Implementations must answer this from memory, so it is cheap enough to be called
+     * for every client request.
+     *
+     * @param bpn the BPN to look up
+     * @return the {@link DidEntry} for the BPN, or {@code null} if no mapping exists
+     */
+    DidEntry find(String bpn);
+
+    /**
+     * Resolves the DIDs for multiple BPNs. BPNs for which no mapping exists are omitted from the result. Implementations
+     * should answer all lookups from the same state of the directory.
+     *
+     * @param bpns the BPNs to look up
+     * @return the {@link DidEntry}s of all BPNs that could be resolved
+     */
+    default Stream<DidEntry> find(Collection<String> bpns) {
+        return bpns.stream().map(this::find).filter(Objects::nonNull);
+    }
+
+    /**
+     * Resolves the BPNs that are mapped to a DID. Like {@link #find(String)}, this must be answered from memory.
+     *
+     * @param did the DID to look up
+     * @return the {@link DidEntry}s of all BPNs mapped to the DID, or an empty list if there are none
+     */
+    List<DidEntry> findByDid(String did);
 
     /**
      * Adds a new BPN-DID mapping.
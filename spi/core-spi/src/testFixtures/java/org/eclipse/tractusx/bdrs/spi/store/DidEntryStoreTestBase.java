@@ -27,6 +27,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -124,6 +125,138 @@ public abstract class DidEntryStoreTestBase {
         assertThat(entries).isEmpty();
     }
 
+    @Test
+    void snapshot_versionIncreasesOnChange() {
+        var initial = getStore().snapshot().version();
+
+        getStore().save(new DidEntry(BPN, DID));
+        var afterSave = getStore().snapshot().version();
+        assertThat(afterSave).isGreaterThan(initial);
+
+        getStore().update(new DidEntry(BPN, DID2));
+        var afterUpdate = getStore().snapshot().version();
+        assertThat(afterUpdate).isGreaterThan(afterSave);
+
+        getStore().delete(BPN);
+        assertThat(getStore().snapshot().version()).isGreaterThan(afterUpdate);
+    }
+
+    @Test
+    void snapshot_versionUnchanged_whenDeletingNonExisting() {
+        getStore().save(new DidEntry(BPN, DID));
+        var version = getStore().snapshot().version();
+
+        getStore().delete(BPN2);
+
+        assertThat(getStore().snapshot().version()).isEqualTo(version);
+        assertThat(deserialize(getStore().snapshot().content())).containsEntry(BPN, DID);
+    }
+
+    @Test
+    void changes_shouldReturnNetChanges() {
+        getStore().save(new DidEntry(BPN, DID));
+        var since = getStore().snapshot().version();
+
+        getStore().save(new DidEntry(BPN2, DID));
+        getStore().update(new DidEntry(BPN2, DID2));
+        getStore().delete(BPN);
+
+        var changes = getStore().changes(since);
+
+        assertThat(changes).hasValueSatisfying(c -> {
+            assertThat(c.version()).isEqualTo(getStore().snapshot().version());
+            assertThat(c.upserts()).hasSize(1).containsEntry(BPN2, DID2);
+            assertThat(c.deletions()).containsExactly(BPN);
+        });
+    }
+
+    @Test
+    void changes_whenUpToDate_shouldBeEmpty() {
+        getStore().save(new DidEntry(BPN, DID));
+        var version = getStore().snapshot().version();
+
+        assertThat(getStore().changes(version)).hasValueSatisfying(c -> {
+            assertThat(c.version()).isEqualTo(version);
+            assertThat(c.upserts()).isEmpty();
+            assertThat(c.deletions()).isEmpty();
+        });
+    }
+
+    @Test
+    void changes_whenVersionUnknown_shouldNotBeAvailable() {
+        getStore().save(new DidEntry(BPN, DID));
+
+        assertThat(getStore().changes(getStore().snapshot().version() + 1)).isEmpty();
+    }
+
+    @Test
+    void changes_acrossBulkSave_shouldNotBeAvailable() {
+        getStore().save(new DidEntry(BPN, DID));
+        var beforeBulk = getStore().snapshot().version();
+
+        getStore().save(Stream.of(new DidEntry(BPN2, DID2)));
+        var afterBulk = getStore().snapshot().version();
+        getStore().delete(BPN);
+
+        assertThat(getStore().changes(beforeBulk)).isEmpty();
+        assertThat(getStore().changes(afterBulk)).hasValueSatisfying(c -> assertThat(c.deletions()).containsExactly(BPN));
+    }
+
+    @Test
+    void find_whenExists() {
+        getStore().save(new DidEntry(BPN, DID));
+
+        assertThat(getStore().find(BPN)).isEqualTo(new DidEntry(BPN, DID));
+    }
+
+    @Test
+    void find_whenNotExists() {
+        getStore().save(new DidEntry(BPN, DID));
+
+        assertThat(getStore().find(BPN2)).isNull();
+    }
+
+    @Test
+    void find_shouldReflectUpdatesAndDeletions() {
+        getStore().save(new DidEntry(BPN, DID));
+        getStore().update(new DidEntry(BPN, DID2));
+        assertThat(getStore().find(BPN)).isEqualTo(new DidEntry(BPN, DID2));
+
+        getStore().delete(BPN);
+        assertThat(getStore().find(BPN)).isNull();
+    }
+
+    @Test
+    void findMany_shouldOmitUnknown() {
+        getStore().save(new DidEntry(BPN, DID));
+        getStore().save(new DidEntry(BPN2, DID2));
+
+        var entries = getStore().find(List.of(BPN, "BPN-unknown", BPN2));
+
+        assertThat(entries).containsExactlyInAnyOrder(new DidEntry(BPN, DID), new DidEntry(BPN2, DID2));
+    }
+
+    @Test
+    void findByDid_shouldReturnAllBpns() {
+        getStore().save(new DidEntry(BPN, DID));
+        getStore().save(new DidEntry(BPN2, DID));
+
+        assertThat(getStore().findByDid(DID)).containsExactlyInAnyOrder(new DidEntry(BPN, DID), new DidEntry(BPN2, DID));
+        assertThat(getStore().findByDid(DID2)).isEmpty();
+    }
+
+    @Test
+    void findByDid_shouldReflectUpdatesAndDeletions() {
+        getStore().save(new DidEntry(BPN, DID));
+        getStore().save(new DidEntry(BPN2, DID));
+
+        getStore().update(new DidEntry(BPN, DID2));
+        getStore().delete(BPN2);
+
+        assertThat(getStore().findByDid(DID)).isEmpty();
+        assertThat(getStore().findByDid(DID2)).containsExactly(new DidEntry(BPN, DID2));
+    }
+
     @ParameterizedTest
     @ValueSource(ints = { 1000, 10_000, 30_000, 50_000, 100_000 })
     void saveAndGetManyEntries(int size) {
@@ -139,7 +272,7 @@ public abstract class DidEntryStoreTestBase {
 
     protected abstract DidEntryStore getStore();
 
-    private Map<String, String> deserialize(byte[] bytes) {
+    protected Map<String, String> deserialize(byte[] bytes) {
         try {
             GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(bytes));
             var decompressed = stream.readAllBytes();